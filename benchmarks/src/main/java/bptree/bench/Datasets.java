@@ -0,0 +1,86 @@
+package bptree.bench;
+
+import bptree.PartFileGenerator;
+import bptree.PartFileReader;
+import bptree.PartRecord;
+import bptree.ZipfianGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Datasets and key streams shared by the benchmarks.
+// A dataset is either "partfile" (partfile.txt, or the file named by -Dpartfile=...) or a record
+// count; synthetic records get IDs in the AAA-000 shape, spread evenly over the whole ID space.
+final class Datasets {
+
+    // number of distinct IDs of the form AAA-000 .. ZZZ-999
+    static final int ID_UNIVERSE = PartFileGenerator.ID_UNIVERSE;
+
+    private Datasets() {
+    }
+
+    // records of the dataset in key order
+    static List<PartRecord> load(String dataset) throws IOException {
+        if (dataset.equals("partfile")) {
+            List<PartRecord> records = new ArrayList<>();
+            new PartFileReader().read(partFile(), records::add);
+            return records;
+        }
+        int n = Integer.parseInt(dataset);
+        if (n > ID_UNIVERSE) throw new IllegalArgumentException("at most " + ID_UNIVERSE + " synthetic records");
+        List<PartRecord> records = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            records.add(new PartRecord(PartFileGenerator.spreadId(i, n), "SYNTHETIC PART " + i));
+        }
+        return records;
+    }
+
+    // count IDs drawn from records: "uniform" picks every record equally often,
+    // "skewed" draws Zipfian ranks and maps them to records scattered over the key space
+    static String[] keys(List<PartRecord> records, String access, int count, long seed) {
+        int n = records.size();
+        Random rnd = new Random(seed);
+        String[] out = new String[count];
+        switch (access) {
+            case "uniform":
+                for (int i = 0; i < count; i++) out[i] = records.get(rnd.nextInt(n)).id;
+                break;
+            case "skewed":
+                int[] hotOrder = shuffledIndexes(n, rnd);
+                ZipfianGenerator zipf = new ZipfianGenerator(n, seed);
+                for (int i = 0; i < count; i++) out[i] = records.get(hotOrder[zipf.next()]).id;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown access pattern: " + access);
+        }
+        return out;
+    }
+
+    static int[] shuffledIndexes(int n, Random rnd) {
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = idx[i];
+            idx[i] = idx[j];
+            idx[j] = t;
+        }
+        return idx;
+    }
+
+    // partfile.txt from -Dpartfile, the working directory or its parent
+    static String partFile() {
+        String configured = System.getProperty("partfile");
+        if (configured != null) return configured;
+        for (String candidate : new String[]{"partfile.txt", "../partfile.txt"}) {
+            Path p = Paths.get(candidate);
+            if (Files.exists(p)) return p.toString();
+        }
+        throw new IllegalStateException("partfile.txt not found; pass -Dpartfile=<path>");
+    }
+}
@@ -0,0 +1,84 @@
+package bptree.bench;
+
+import bptree.BPlusTree;
+import bptree.PartRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Inserts a batch of new IDs into a tree that holds the rest of the dataset.
+// Every tenth record is held out of the tree; each invocation rebuilds the tree and inserts
+// BATCH held-out records, either scattered over the key space (uniform) or from one
+// contiguous hot key range (skewed).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class InsertBenchmark {
+
+    static final int BATCH = 1000;
+
+    @State(Scope.Benchmark)
+    public static class InsertState {
+        @Param({"partfile", "100000", "1000000", "10000000"})
+        public String dataset;
+
+        @Param({"uniform", "skewed"})
+        public String access;
+
+        List<PartRecord> base = new ArrayList<>();
+        List<PartRecord> heldOut = new ArrayList<>();
+        PartRecord[] batch = new PartRecord[BATCH];
+        BPlusTree tree;
+        Random rnd = new Random(42);
+
+        @Setup(Level.Trial)
+        public void split() throws IOException {
+            List<PartRecord> records = Datasets.load(dataset);
+            for (int i = 0; i < records.size(); i++) {
+                if (i % 10 == 5) heldOut.add(records.get(i));
+                else base.add(records.get(i));
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void prepare() {
+            tree = new BPlusTree();
+            tree.bulkLoad(base);
+            int n = heldOut.size();
+            if (access.equals("uniform")) {
+                for (int i = 0; i < BATCH; i++) batch[i] = heldOut.get(rnd.nextInt(n));
+            } else {
+                int start = rnd.nextInt(Math.max(1, n - BATCH));
+                for (int i = 0; i < BATCH; i++) batch[i] = heldOut.get((start + i) % n);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int insert(InsertState s) {
+        int inserted = 0;
+        for (PartRecord r : s.batch) {
+            if (s.tree.insert(r)) inserted++;
+        }
+        return inserted;
+    }
+}
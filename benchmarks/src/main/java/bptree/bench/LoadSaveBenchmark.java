@@ -0,0 +1,67 @@
+package bptree.bench;
+
+import bptree.BPlusTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Full loadFromFile and saveToFile of a dataset written out as a fixed-width part file.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LoadSaveBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FileState {
+        @Param({"partfile", "100000", "1000000", "10000000"})
+        public String dataset;
+
+        BPlusTree tree;
+        Path input;
+        Path output;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            tree = new BPlusTree();
+            tree.bulkLoad(Datasets.load(dataset));
+            input = Files.createTempFile("parts", ".txt");
+            output = Files.createTempFile("parts-out", ".txt");
+            tree.saveToFile(input.toString());
+        }
+
+        @TearDown(Level.Trial)
+        public void cleanup() throws IOException {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Benchmark
+    public BPlusTree load(FileState s) throws IOException {
+        BPlusTree tree = new BPlusTree();
+        tree.loadFromFile(s.input.toString());
+        return tree;
+    }
+
+    @Benchmark
+    public void save(FileState s) throws IOException {
+        s.tree.saveToFile(s.output.toString());
+    }
+}
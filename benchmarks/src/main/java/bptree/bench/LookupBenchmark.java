@@ -0,0 +1,34 @@
+package bptree.bench;
+
+import bptree.PartRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Point lookups and short range scans against a bulk-loaded tree.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class LookupBenchmark {
+
+    static final int SCAN_LENGTH = 100;
+
+    @Benchmark
+    public PartRecord search(TreeState s, TreeState.Cursor c) {
+        return s.tree.search(c.nextKey(s));
+    }
+
+    @Benchmark
+    public List<PartRecord> scanFrom(TreeState s, TreeState.Cursor c) {
+        return s.tree.scanFrom(c.nextKey(s), SCAN_LENGTH);
+    }
+}
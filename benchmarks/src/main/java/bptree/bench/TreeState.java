@@ -0,0 +1,52 @@
+package bptree.bench;
+
+import bptree.BPlusTree;
+import bptree.PartRecord;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+
+// A bulk-loaded tree plus a stream of lookup keys, shared by all benchmark threads.
+@State(Scope.Benchmark)
+public class TreeState {
+
+    static final int KEY_COUNT = 1 << 20;
+
+    @Param({"partfile", "100000", "1000000", "10000000"})
+    public String dataset;
+
+    @Param({"uniform", "skewed"})
+    public String access;
+
+    // "on" records latencies with TreeMetrics; compare against "off" with -p metrics=off,on
+    @Param({"off"})
+    public String metrics;
+
+    BPlusTree tree;
+    String[] keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<PartRecord> records = Datasets.load(dataset);
+        tree = new BPlusTree();
+        tree.bulkLoad(records);
+        if (metrics.equals("on")) tree.enableMetrics();
+        keys = Datasets.keys(records, access, KEY_COUNT, 42);
+    }
+
+    // per-thread position in the key stream
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        String nextKey(TreeState s) {
+            next = (next + 1) & (KEY_COUNT - 1);
+            return s.keys[next];
+        }
+    }
+}
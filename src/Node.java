@@ -1,4 +0,0 @@
-abstract class Node {
-    InternalNode parent;
-    boolean isLeaf;
-}
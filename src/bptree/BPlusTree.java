@@ -0,0 +1,1233 @@
+package bptree;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class BPlusTree {
+
+    // default tree order (max keys per internal node and max records per leaf)
+    public static final int DEFAULT_ORDER = 128;
+
+    // B+ tree parameters, fixed per tree
+    public final int INTERNAL_MIN;   // minimum keys in a non-root internal node after deletes
+    public final int INTERNAL_MAX;   // allow INTERNAL_MIN..INTERNAL_MAX keys per index node
+    public final int LEAF_MAX;       // each leaf can store up to LEAF_MAX records
+    public final int LEAF_MIN;       // minimal non-root leaf size after deletion
+
+    private Node root;
+
+    // whether nodes keep KeyCodec-packed keys next to the String IDs
+    final boolean packedKeys;
+
+    // how full bulkLoad packs each node (leaves and internal nodes)
+    private double bulkFillFactor = 0.9;
+
+    // full-text index on descriptions; null until enableDescriptionIndex()
+    private DescriptionIndex descIndex;
+
+    // latency and structure metrics; null until enableMetrics()
+    private TreeMetrics metrics;
+
+    // point-lookup layers; null until enableBloomFilter() / enableHotCache()
+    private BloomFilter bloom;
+    private double bloomFpp;
+    private int bloomStaleDeletes;  // deleted IDs still set in the filter
+    private HotRecordCache hotCache;
+
+    // copy-on-write state: nodes from an earlier epoch may be shared with an open Snapshot
+    private int epoch = 0;
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+
+    // Stats
+    public int totalSplits = 0;     // leaf + internal splits
+    public int parentSplits = 0;    // internal splits (parent)
+    public int totalFusions = 0;    // leaf + internal merges
+    public int parentFusions = 0;   // internal merges (parent)
+    public long copiedNodes = 0;    // nodes copied because a snapshot shared them
+    public long bloomNegatives = 0; // searches the Bloom filter answered without a descent
+    public long bloomFalsePositives = 0; // searches the filter let through that found nothing
+    public int bloomRebuilds = 0;
+    int leafCount = 1;              // leaves in the chain, kept up to date for TreeMetrics
+
+    public BPlusTree() {
+        this(DEFAULT_ORDER);
+    }
+
+    public BPlusTree(int order) {
+        this(order, order);
+    }
+
+    public BPlusTree(int leafMax, int internalMax) {
+        this(leafMax, internalMax, true);
+    }
+
+    // leafMax = max records per leaf, internalMax = max separator keys per internal node,
+    // packedKeys = compare IDs as KeyCodec longs instead of Strings
+    public BPlusTree(int leafMax, int internalMax, boolean packedKeys) {
+        if (leafMax < 3 || internalMax < 3) throw new IllegalArgumentException("tree order must be at least 3");
+        LEAF_MAX = leafMax;
+        LEAF_MIN = leafMax / 2;
+        INTERNAL_MAX = internalMax;
+        INTERNAL_MIN = internalMax / 2;
+        this.packedKeys = packedKeys;
+        root = newLeaf();
+    }
+
+    LeafNode newLeaf() {
+        LeafNode leaf = new LeafNode(LEAF_MAX, packedKeys);
+        leaf.epoch = epoch;
+        return leaf;
+    }
+
+    InternalNode newInternal() {
+        InternalNode in = new InternalNode(INTERNAL_MAX, packedKeys);
+        in.epoch = epoch;
+        return in;
+    }
+
+    // -------------------- SEARCH --------------------
+    // find a PartRecord by ID; returns null if not found
+    public PartRecord search(String id) {
+        if (!TreeMetrics.ENABLED || metrics == null) return doSearch(id);
+        long start = System.nanoTime();
+        PartRecord found = doSearch(id);
+        metrics.record(TreeMetrics.Op.SEARCH, start);
+        return found;
+    }
+
+    private PartRecord doSearch(String id) {
+        if (id == null) return null;
+        if (hotCache != null) {
+            PartRecord hot = hotCache.get(id);
+            if (hot != null) return hot;
+        }
+        if (bloom != null && !bloom.mightContain(id)) {
+            bloomNegatives++;
+            return null;
+        }
+        LeafNode leaf = findLeaf(id);
+        if (leaf == null) return null;
+        PartRecord found = leaf.getRecord(id);
+        if (found == null) {
+            if (bloom != null) bloomFalsePositives++;
+        } else if (hotCache != null) {
+            hotCache.add(found);
+        }
+        return found;
+    }
+
+    // search() without its side effects: no metrics, hot cache or Bloom filter counters and no
+    // root created in an empty tree, so readers sharing a lock can call it at the same time
+    PartRecord lookup(String id) {
+        if (id == null || root == null) return null;
+        long key = packedKeys ? KeyCodec.encode(id) : 0;
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            node = in.children[packedKeys ? in.childIndex(key, id) : in.childIndex(id)];
+        }
+        return ((LeafNode) node).getRecord(id);
+    }
+
+    // -------------------- INSERT --------------------
+    // Insert a new PartRecord; return false on duplicate or error
+    public boolean insert(PartRecord rec) {
+        if (!TreeMetrics.ENABLED || metrics == null) return doInsert(rec);
+        long start = System.nanoTime();
+        boolean inserted = doInsert(rec);
+        metrics.record(TreeMetrics.Op.INSERT, start);
+        return inserted;
+    }
+
+    private boolean doInsert(PartRecord rec) {
+        if (rec == null || rec.id == null) return false;
+
+        LeafNode leaf = findLeaf(rec.id);
+        if (leaf.contains(rec.id)) {
+            // duplicate ID
+            return false;
+        }
+
+        leaf = writable(leaf);
+        leaf.insertSorted(rec);
+        adjustCounts(leaf, rec.id, 1);
+        if (descIndex != null) descIndex.add(rec);
+
+        // if overflow, split leaf and propagate
+        if (leaf.size() > LEAF_MAX) {
+            splitLeaf(leaf);
+        }
+        if (bloom != null) {
+            bloom.add(rec.id);
+            if (bloom.isFull()) rebuildBloom();
+        }
+        return true;
+    }
+
+    // -------------------- BATCH SEARCH / INSERT --------------------
+    // looks up every ID of the batch; result i is the record for the i-th ID (null if absent).
+    // The batch is sorted once and consecutive IDs that fall in the same leaf share one descent.
+    public List<PartRecord> searchAll(Collection<String> ids) {
+        String[] keys = ids.toArray(new String[0]);
+        int[] order = KeyCodec.sortedOrder(keys);
+
+        PartRecord[] found = new PartRecord[keys.length];
+        String[] upper = new String[1];
+        LeafNode leaf = null;
+        for (int i : order) {
+            String id = keys[i];
+            if (id == null || (bloom != null && !bloom.mightContain(id))) continue;
+            // re-descend only when the ID is past the current leaf's range
+            if (leaf == null || (upper[0] != null && id.compareTo(upper[0]) >= 0)) leaf = findLeaf(id, upper);
+            found[i] = leaf.getRecord(id);
+        }
+        return Arrays.asList(found);
+    }
+
+    // inserts every record whose ID isn't in the tree yet (first one wins for duplicates within
+    // the batch) and returns how many were inserted. Records are sorted once, each run that lands
+    // in the same leaf is merged into it in one go, and a leaf that overflows is split once into
+    // as many leaves as the run needs instead of once per record.
+    public int insertAll(Collection<PartRecord> batch) {
+        List<PartRecord> valid = new ArrayList<>(batch.size());
+        for (PartRecord r : batch) if (r != null && r.id != null) valid.add(r);
+        String[] ids = new String[valid.size()];
+        for (int k = 0; k < ids.length; k++) ids[k] = valid.get(k).id;
+        List<PartRecord> sorted = new ArrayList<>(ids.length);
+        for (int k : KeyCodec.sortedOrder(ids)) sorted.add(valid.get(k)); // stable, so first duplicate stays first
+
+        int inserted = 0;
+        String[] upper = new String[1];
+        int i = 0;
+        while (i < sorted.size()) {
+            LeafNode leaf = findLeaf(sorted.get(i).id, upper);
+            int end = i + 1;
+            while (end < sorted.size() && (upper[0] == null || sorted.get(end).id.compareTo(upper[0]) < 0)) end++;
+            inserted += mergeIntoLeaf(leaf, sorted.subList(i, end));
+            i = end;
+        }
+        if (bloom != null && bloom.isFull()) rebuildBloom();
+        return inserted;
+    }
+
+    // merges a sorted run of records that all route to leaf into it, splitting it if needed.
+    // A run of up to half a leaf is inserted in place; a longer one rebuilds the leaf from a
+    // merged copy, split once into as many leaves as it needs
+    private int mergeIntoLeaf(LeafNode leaf, List<PartRecord> run) {
+        if (run.size() <= LEAF_MIN) return insertIntoLeaf(leaf, run);
+        List<PartRecord> merged = new ArrayList<>(leaf.size() + run.size());
+        int a = 0, b = 0, added = 0;
+        while (a < leaf.size() || b < run.size()) {
+            if (b == run.size()) {
+                merged.add(leaf.records[a++]);
+                continue;
+            }
+            PartRecord r = run.get(b);
+            String last = merged.isEmpty() ? null : merged.get(merged.size() - 1).id;
+            if (a < leaf.size() && leaf.records[a].id.compareTo(r.id) <= 0) {
+                merged.add(leaf.records[a++]);
+            } else {
+                b++;
+                if (r.id.equals(last)) continue; // duplicate of an existing or earlier batch record
+                merged.add(r);
+                if (descIndex != null) descIndex.add(r);
+                if (bloom != null) bloom.add(r.id);
+                added++;
+            }
+        }
+        if (added == 0) return 0;
+
+        leaf = writable(leaf);
+        if (merged.size() <= LEAF_MAX) {
+            leaf.clear();
+            for (PartRecord r : merged) leaf.append(r);
+            adjustCounts(leaf, leaf.records[0].id, added);
+            return added;
+        }
+
+        // split once into evenly filled leaves; the first piece reuses the existing leaf
+        int leafCap = Math.max(LEAF_MIN, Math.min(LEAF_MAX, (int) Math.round(LEAF_MAX * bulkFillFactor)));
+        List<int[]> pieces = evenGroups(merged.size(), leafCap, LEAF_MIN);
+        LeafNode prev = null;
+        List<LeafNode> created = new ArrayList<>(pieces.size());
+        for (int[] range : pieces) {
+            LeafNode piece = prev == null ? leaf : newLeaf();
+            created.add(piece);
+            piece.clear();
+            for (int k = range[0]; k < range[1]; k++) piece.append(merged.get(k));
+            if (prev != null) {
+                piece.next = prev.next;
+                if (prev.next != null) prev.next.prev = piece;
+                piece.prev = prev;
+                prev.next = piece;
+                piece.parent = prev.parent;
+                insertIntoParent(prev, piece.records[0].id, piece);
+                totalSplits++;
+                leafCount++;
+            }
+            prev = piece;
+        }
+        // ancestors above the split points still hold the old counts
+        for (LeafNode piece : created) refreshCounts(piece);
+        return added;
+    }
+
+    // inserts the run record by record like insert(), without a descent per record: after a
+    // split the rest of the run moves right past every new leaf whose first ID it has reached.
+    // The run stays below the first ID of the leaf that followed before the splits.
+    private int insertIntoLeaf(LeafNode leaf, List<PartRecord> run) {
+        int added = 0, pending = 0;
+        String first = null;
+        boolean split = false;
+        for (PartRecord r : run) {
+            if (split && leaf.next != null && r.id.compareTo(leaf.next.records[0].id) >= 0) {
+                if (pending > 0) adjustCounts(leaf, first, pending);
+                pending = 0;
+                do leaf = leaf.next; while (leaf.next != null && r.id.compareTo(leaf.next.records[0].id) >= 0);
+            }
+            if (leaf.contains(r.id)) continue; // also skips duplicates within the run
+            if (pending == 0) {
+                leaf = writable(leaf);
+                first = r.id;
+            }
+            leaf.insertSorted(r);
+            if (descIndex != null) descIndex.add(r);
+            if (bloom != null) bloom.add(r.id);
+            pending++;
+            added++;
+            if (leaf.size() > LEAF_MAX) {
+                // the ancestors' counts must be current before the split adds a separator
+                adjustCounts(leaf, first, pending);
+                pending = 0;
+                splitLeaf(leaf);
+                split = true;
+            }
+        }
+        if (pending > 0) adjustCounts(leaf, first, pending);
+        return added;
+    }
+
+    // -------------------- UPDATE --------------------
+    // update the description of an existing record; returns true on success
+    public boolean update(String id, String newDesc) {
+        if (!TreeMetrics.ENABLED || metrics == null) return doUpdate(id, newDesc);
+        long start = System.nanoTime();
+        boolean updated = doUpdate(id, newDesc);
+        metrics.record(TreeMetrics.Op.UPDATE, start);
+        return updated;
+    }
+
+    private boolean doUpdate(String id, String newDesc) {
+        if (id == null) return false;
+        LeafNode leaf = findLeaf(id);
+        if (leaf == null) return false;
+        PartRecord rec = leaf.getRecord(id);
+        String oldDesc = rec == null ? null : rec.description;
+        if (rec != null && openSnapshots.get() > 0) {
+            // a snapshot may still hold the record itself, so swap in a new one instead
+            leaf = writable(leaf);
+            PartRecord fresh = new PartRecord(id, newDesc);
+            leaf.records[leaf.indexOf(id)] = fresh;
+            if (hotCache != null) hotCache.replace(fresh);
+        } else if (rec == null || !leaf.UpdateRecord(id, newDesc)) {
+            return false;
+        }
+        if (descIndex != null) descIndex.replace(id, oldDesc, newDesc);
+        return true;
+    }
+
+    // -------------------- FIND LEAF --------------------
+    // traverse internal nodes until we reach a leaf
+    private LeafNode findLeaf(String id) {
+        return findLeaf(id, null);
+    }
+
+    // same as findLeaf(id); if upper is given, upper[0] receives the smallest separator above
+    // the leaf's key range (null for the rightmost leaf), so every ID < upper[0] routes here too
+    private LeafNode findLeaf(String id, String[] upper) {
+        Node node = root;
+        if (node == null) {
+            root = newLeaf();
+            leafCount = 1;
+            return (LeafNode) root;
+        }
+
+        if (upper != null) upper[0] = null;
+        // pack the ID once; every internal node then compares it as an integer
+        long key = packedKeys ? KeyCodec.encode(id) : 0;
+        int visited = 1;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            // keys are separators equal to first key of right child
+            int idx = packedKeys ? in.childIndex(key, id) : in.childIndex(id);
+            if (upper != null && idx < in.numKeys) upper[0] = in.key(idx); // deeper levels are tighter
+            node = in.children[idx];
+            visited++;
+        }
+        if (TreeMetrics.ENABLED && metrics != null) metrics.descent(visited);
+        return (LeafNode) node;
+    }
+
+    // -------------------- LOOKUP LAYERS --------------------
+    // Bloom filter of the IDs in the tree with the given false-positive rate: searches for IDs it
+    // rules out return null without a descent. It takes every insert; after deletes it is
+    // rebuilt once the stale IDs pass an eighth of it, and it is resized once it outgrows the
+    // 1.5x headroom it was built with.
+    public BloomFilter enableBloomFilter(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) throw new IllegalArgumentException("false-positive rate must be in (0, 1)");
+        bloomFpp = falsePositiveRate;
+        rebuildBloom();
+        return bloom;
+    }
+
+    public void disableBloomFilter() {
+        bloom = null;
+    }
+
+    public BloomFilter getBloomFilter() {
+        return bloom;
+    }
+
+    // cache of up to capacity hot records in front of search (see HotRecordCache). search then
+    // changes the cache, so the tree must not be searched from several threads at once.
+    public HotRecordCache enableHotCache(int capacity, HotRecordCache.Policy policy) {
+        hotCache = new HotRecordCache(capacity, policy);
+        return hotCache;
+    }
+
+    public void disableHotCache() {
+        hotCache = null;
+    }
+
+    public HotRecordCache getHotCache() {
+        return hotCache;
+    }
+
+    private void rebuildBloom() {
+        rebuildBloom(() -> iterator(null, null), count());
+    }
+
+    private void rebuildBloom(Iterable<PartRecord> records, int n) {
+        BloomFilter fresh = new BloomFilter(Math.max(1024, n + n / 2), bloomFpp);
+        for (PartRecord r : records) fresh.add(r.id);
+        bloom = fresh;
+        bloomStaleDeletes = 0;
+        bloomRebuilds++;
+    }
+
+    // -------------------- METRICS --------------------
+    // starts recording latencies and structure samples (see TreeMetrics); returns null when
+    // metrics are switched off for the JVM with -Dbptree.metrics=off
+    public TreeMetrics enableMetrics() {
+        if (!TreeMetrics.ENABLED) return null;
+        if (metrics == null) metrics = new TreeMetrics(this);
+        return metrics;
+    }
+
+    public void disableMetrics() {
+        metrics = null;
+    }
+
+    public TreeMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void timed(TreeMetrics.Op op, long start) {
+        if (TreeMetrics.ENABLED && metrics != null) metrics.record(op, start);
+    }
+
+    // -------------------- SNAPSHOTS --------------------
+    // While a snapshot is open, writers never change a node it can reach: a node from an
+    // earlier epoch is copied before its first change, together with every ancestor up to the
+    // root that isn't a copy yet (path copying). Ancestors of a node of the current epoch are
+    // always of the current epoch too, so the copying stops at the first one that is.
+    // Snapshots read top-down only, so parent pointers and leaf links of shared nodes may still
+    // be repointed at the copies.
+
+    // read-only view of the tree as it is now; close it when done so writers stop copying.
+    // Call it from the thread that writes to the tree; the handle can then be read from any thread
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot(this, root, count());
+        openSnapshots.incrementAndGet();
+        epoch++;
+        return s;
+    }
+
+    void releaseSnapshot() {
+        openSnapshots.decrementAndGet();
+    }
+
+    public int openSnapshots() {
+        return openSnapshots.get();
+    }
+
+    private boolean shared(Node node) {
+        return node.epoch != epoch && openSnapshots.get() > 0;
+    }
+
+    // node itself, or a private copy of it that has taken its place in the tree
+    private LeafNode writable(LeafNode leaf) {
+        return shared(leaf) ? (LeafNode) copyPath(leaf) : leaf;
+    }
+
+    private InternalNode writable(InternalNode node) {
+        return shared(node) ? (InternalNode) copyPath(node) : node;
+    }
+
+    private Node copyPath(Node node) {
+        InternalNode parent = node.parent == null ? null : writable(node.parent);
+        Node copy;
+        if (node.isLeaf) {
+            LeafNode leaf = (LeafNode) node, c = leaf.copy();
+            c.prev = leaf.prev;
+            c.next = leaf.next;
+            if (c.prev != null) c.prev.next = c;
+            if (c.next != null) c.next.prev = c;
+            copy = c;
+        } else {
+            InternalNode c = ((InternalNode) node).copy();
+            for (int i = 0; i <= c.numKeys; i++) c.children[i].parent = c;
+            copy = c;
+        }
+        copy.epoch = epoch;
+        copy.parent = parent;
+        if (parent == null) root = copy;
+        else parent.children[parent.indexOfChild(node)] = copy;
+        copiedNodes++;
+        return copy;
+    }
+
+    // -------------------- SUBTREE COUNTS --------------------
+    // every internal node keeps the record count of each child's subtree
+
+    static int subtreeCount(Node node) {
+        return node.isLeaf ? ((LeafNode) node).size : ((InternalNode) node).totalCount();
+    }
+
+    // adds delta to the count of each subtree on the path from node up to the root that holds id
+    private void adjustCounts(Node node, String id, int delta) {
+        long key = packedKeys ? KeyCodec.encode(id) : 0;
+        for (InternalNode p = node.parent; p != null; p = p.parent) {
+            p.counts[packedKeys ? p.childIndex(key, id) : p.childIndex(id)] += delta;
+        }
+    }
+
+    // recomputes the counts on the path from node up to the root from the children's totals
+    private void refreshCounts(Node node) {
+        for (Node n = node; n.parent != null; n = n.parent) {
+            n.parent.counts[n.parent.indexOfChild(n)] = subtreeCount(n);
+        }
+    }
+
+    // number of records in the tree
+    public int count() {
+        return root == null ? 0 : subtreeCount(root);
+    }
+
+    // number of records with lo <= id < hi; null bounds are open
+    public int countRange(String lo, String hi) {
+        int upto = hi == null ? count() : rank(hi);
+        int below = lo == null ? 0 : rank(lo);
+        return Math.max(0, upto - below);
+    }
+
+    // number of records with an ID below id (its position if present, or where it would go)
+    public int rank(String id) {
+        if (root == null) return 0;
+        long key = packedKeys ? KeyCodec.encode(id) : 0;
+        int rank = 0;
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            int idx = packedKeys ? in.childIndex(key, id) : in.childIndex(id);
+            for (int i = 0; i < idx; i++) rank += in.counts[i];
+            node = in.children[idx];
+        }
+        return rank + ((LeafNode) node).lowerBound(id);
+    }
+
+    // record at position index in ID order, or null if index is out of range
+    public PartRecord recordAt(int index) {
+        if (index < 0 || index >= count()) return null;
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            int i = 0;
+            while (index >= in.counts[i]) index -= in.counts[i++];
+            node = in.children[i];
+        }
+        return ((LeafNode) node).records[index];
+    }
+
+    // up to limit records starting at position offset, for paged listings
+    public List<PartRecord> page(int offset, int limit) {
+        PartRecord first = recordAt(offset);
+        if (first == null || limit <= 0) return new ArrayList<>();
+        return range(first.id, null).limit(limit).collect(Collectors.toList());
+    }
+
+    // -------------------- SPLIT LEAF --------------------
+    private void splitLeaf(LeafNode leaf) {
+        int mid = leaf.size() / 2; // e.g., 17 -> 8 and 9
+
+        LeafNode right = newLeaf();
+        // move right half to new node, shrinking the left leaf
+        leaf.moveTailTo(mid, right);
+
+        // link siblings (maintain leaf chain)
+        right.next = leaf.next;
+        if (leaf.next != null) leaf.next.prev = right;
+        right.prev = leaf;
+        leaf.next = right;
+
+        // set parent reference
+        right.parent = leaf.parent;
+
+        // promoted key is the first key of the right node
+        String promoteKey = right.records[0].id;
+
+        // insert separator into parent (may create internal splits)
+        insertIntoParent(leaf, promoteKey, right);
+
+        // update statistics
+        totalSplits++;
+        leafCount++;
+    }
+
+    // -------------------- INSERT INTO PARENT --------------------
+    private void insertIntoParent(Node left, String key, Node right) {
+        // if left has no parent, create new root
+        if (left.parent == null) {
+            InternalNode newRoot = newInternal();
+            newRoot.setKey(0, key);
+            newRoot.children[0] = left;
+            newRoot.children[1] = right;
+            newRoot.counts[0] = subtreeCount(left);
+            newRoot.counts[1] = subtreeCount(right);
+            newRoot.numKeys = 1;
+
+            left.parent = newRoot;
+            right.parent = newRoot;
+            root = newRoot;
+
+            parentSplits++;
+            totalSplits++;
+            return;
+        }
+
+        InternalNode parent = left.parent;
+        // find index of left child inside parent (key sorts after every separator left of it)
+        int idx = parent.childIndex(key);
+        // insert key at idx (separator) and right child at idx+1
+        parent.insertAt(idx, key, right);
+        right.parent = parent;
+        // right's records came out of left, so the parent's total is unchanged
+        parent.counts[idx] = subtreeCount(left);
+        parent.counts[idx + 1] = subtreeCount(right);
+
+        // if parent overflows, split internal node
+        if (parent.numKeys > INTERNAL_MAX) {
+            splitInternal(parent);
+        }
+    }
+
+    // -------------------- SPLIT INTERNAL --------------------
+    private void splitInternal(InternalNode node) {
+        int mid = node.numKeys / 2; // promote node.key(mid)
+
+        InternalNode right = newInternal();
+        // right keys/children = mid+1 .. end, left keeps 0..mid-1 keys and 0..mid children
+        String promote = node.moveTailTo(mid, right);
+
+        // fix parent pointers for right's children
+        for (int i = 0; i <= right.numKeys; i++) right.children[i].parent = right;
+
+        // insert promoted separator into parent
+        insertIntoParent(node, promote, right);
+
+        parentSplits++;
+        totalSplits++;
+    }
+
+    // -------------------- RANGE SCAN / DISPLAY NEXT 10 --------------------
+    // display next 10 records starting from given ID (inclusive)
+    public void displayNextTen(String startID) {
+        List<PartRecord> found = range(startID, null).limit(10).collect(Collectors.toList());
+        if (found.isEmpty()) {
+            System.out.println("No records found starting from " + startID);
+            return;
+        }
+        for (PartRecord r : found) System.out.println(r);
+    }
+
+    // collect 'count' records starting from startId (inclusive)
+    public List<PartRecord> scanFrom(String startId, int count) {
+        if (!TreeMetrics.ENABLED || metrics == null) return doScanFrom(startId, count);
+        long start = System.nanoTime();
+        List<PartRecord> out = doScanFrom(startId, count);
+        metrics.record(TreeMetrics.Op.SCAN, start);
+        return out;
+    }
+
+    private List<PartRecord> doScanFrom(String startId, int count) {
+        List<PartRecord> out = new ArrayList<>();
+        LeafNode leaf = findLeaf(startId);
+        if (leaf == null) return out;
+
+        int idx = leaf.lowerBound(startId);
+
+        LeafNode cur = leaf;
+        while (cur != null && out.size() < count) {
+            while (idx < cur.size && out.size() < count) {
+                out.add(cur.records[idx++]);
+            }
+            cur = cur.next;
+            idx = 0;
+        }
+        return out;
+    }
+
+    // lazy ascending scan of [lo, hi); null bounds are open. Nothing is copied, and a
+    // parallel() stream splits the scan at subtree boundaries
+    public Stream<PartRecord> range(String lo, String hi) {
+        return StreamSupport.stream(spliterator(lo, hi), false);
+    }
+
+    public Iterator<PartRecord> iterator(String lo, String hi) {
+        return Spliterators.iterator(spliterator(lo, hi));
+    }
+
+    public Spliterator<PartRecord> spliterator(String lo, String hi) {
+        return new RangeSpliterator(root, lo, hi, estimateRecords());
+    }
+
+    // lazy descending scan of [lo, hi), following the prev links
+    public Stream<PartRecord> descendingRange(String lo, String hi) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(descendingIterator(lo, hi),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    public Iterator<PartRecord> descendingIterator(String lo, String hi) {
+        return new Iterator<PartRecord>() {
+            LeafNode leaf;
+            int idx;
+            PartRecord next;
+
+            {
+                if (root != null) {
+                    if (hi == null) {
+                        leaf = getRightmostLeaf();
+                        idx = leaf.size - 1;
+                    } else {
+                        leaf = findLeaf(hi);
+                        idx = leaf.lowerBound(hi) - 1;
+                    }
+                    advance();
+                }
+            }
+
+            // moves next to the record at the cursor (or null past lo) and steps the cursor back
+            private void advance() {
+                next = null;
+                while (leaf != null && idx < 0) {
+                    leaf = leaf.prev;
+                    if (leaf != null) idx = leaf.size - 1;
+                }
+                if (leaf == null) return;
+                PartRecord r = leaf.records[idx--];
+                if (lo == null || r.id.compareTo(lo) >= 0) next = r;
+                else leaf = null;
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public PartRecord next() {
+                if (next == null) throw new NoSuchElementException();
+                PartRecord r = next;
+                advance();
+                return r;
+            }
+        };
+    }
+
+    // rough record count for the spliterator: fan-out along the leftmost path times the
+    // leftmost leaf's size, so it costs one descent instead of a full count
+    private long estimateRecords() {
+        if (root == null) return 0;
+        long est = 1;
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            est *= in.childCount();
+            node = in.children[0];
+        }
+        return est * Math.max(1, ((LeafNode) node).size);
+    }
+
+    // -------------------- DESCRIPTION SEARCH --------------------
+    // builds the description index from the current records and keeps it in sync from now on
+    public void enableDescriptionIndex() {
+        if (descIndex != null) return;
+        descIndex = new DescriptionIndex();
+        descIndex.rebuild(() -> iterator(null, null));
+    }
+
+    public DescriptionIndex getDescriptionIndex() {
+        return descIndex;
+    }
+
+    // records whose description has every term of the query ("AILERON", "PP*", "WING RIB*"),
+    // in ID order. Uses the description index when enabled, otherwise scans every leaf
+    public List<PartRecord> findByDescription(String query) {
+        if (descIndex == null) return scanDescriptions(query);
+        List<PartRecord> out = new ArrayList<>();
+        for (PartRecord r : searchAll(descIndex.query(query))) if (r != null) out.add(r);
+        return out;
+    }
+
+    // linear scan over the leaf chain with the same matching rules as the index
+    public List<PartRecord> scanDescriptions(String query) {
+        return range(null, null).filter(r -> DescriptionIndex.matches(r.description, query)).collect(Collectors.toList());
+    }
+
+    // -------------------- I/O (load/save) --------------------
+    // reads fixed-width file (columns 1-7 ID, 16-80 description) and bulk-builds the tree
+    public PartFileReader.LoadStats loadFromFile(String filename) throws IOException {
+        return loadFromFile(filename, true);
+    }
+
+    // bulk == true packs the records bottom-up; bulk == false inserts them one at a time
+    public PartFileReader.LoadStats loadFromFile(String filename, boolean bulk) throws IOException {
+        long start = System.nanoTime();
+        PartFileReader reader = new PartFileReader();
+        PartFileReader.LoadStats stats;
+        if (!bulk) {
+            // insert record (ignore duplicates during load)
+            stats = reader.read(filename, this::insert);
+        } else {
+            List<PartRecord> records = new ArrayList<>();
+            stats = reader.read(filename, records::add);
+            bulkLoad(records);
+        }
+        timed(TreeMetrics.Op.LOAD, start);
+        return stats;
+    }
+
+    // -------------------- BINARY SNAPSHOT --------------------
+    // writes the records in key order straight off the leaf chain (see BinarySnapshot)
+    public PartFileReader.LoadStats saveSnapshot(String filename, boolean compress) throws IOException {
+        long start = System.nanoTime();
+        PartFileReader.LoadStats stats = BinarySnapshot.write(iterator(null, null), filename, compress);
+        timed(TreeMetrics.Op.SAVE, start);
+        return stats;
+    }
+
+    // replaces the tree contents with a snapshot; records arrive sorted, so bulkLoad skips its sort
+    public PartFileReader.LoadStats loadSnapshot(String filename) throws IOException {
+        List<PartRecord> records = new ArrayList<>((int) Math.min(Integer.MAX_VALUE - 8, BinarySnapshot.recordCount(filename)));
+        long start = System.nanoTime();
+        PartFileReader.LoadStats stats = BinarySnapshot.read(filename, records::add);
+        bulkLoad(records);
+        timed(TreeMetrics.Op.LOAD, start);
+        return stats;
+    }
+
+    // parses, sorts and deduplicates the file on a ForkJoinPool of the given size (see
+    // ParallelLoader), then bulk-builds the tree. Duplicate IDs keep the first record in the file
+    public PartFileReader.LoadStats loadFromFileParallel(String filename, int workers) throws IOException {
+        long start = System.nanoTime();
+        ParallelLoader loader = new ParallelLoader(workers);
+        bulkLoad(loader.load(filename));
+        timed(TreeMetrics.Op.LOAD, start);
+        return new PartFileReader.LoadStats(loader.bytes, loader.parsed, System.nanoTime() - start);
+    }
+
+    // reads the whole file as Strings and parses each line with parseLine (the original loader)
+    public void loadFromFileLines(String filename) throws IOException {
+        long start = System.nanoTime();
+        List<String> lines = Files.readAllLines(Paths.get(filename));
+        List<PartRecord> records = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            PartRecord rec = parseLine(line);
+            if (rec != null) records.add(rec);
+        }
+        bulkLoad(records);
+        timed(TreeMetrics.Op.LOAD, start);
+    }
+
+    // parses one line of the part file; returns null for blank or unusable lines
+    static PartRecord parseLine(String line) {
+        if (line.trim().isEmpty()) return null;
+        // file may have simple "ID description" lines or fixed width.
+        // Try to parse first token as ID and rest as description (robust to the sample file you provided).
+        String trimmed = line.trim();
+        // If there is a space near start (like AAA-077 ...), use first token as id.
+        String id = null;
+        String desc = "";
+        String[] parts = trimmed.split("\\s+", 2);
+        if (parts.length >= 1) {
+            id = parts[0].trim();
+            if (parts.length == 2) desc = parts[1].trim();
+        }
+        // Fallback: if line long and follows fixed-width columns, use substring
+        if ((id == null || id.isEmpty()) && line.length() >= 7) {
+            id = line.substring(0, Math.min(7, line.length())).trim();
+            if (line.length() >= 16) desc = line.substring(15).trim();
+        }
+        if (id == null || id.isEmpty()) return null;
+        return new PartRecord(id, desc);
+    }
+
+    // -------------------- BULK LOAD --------------------
+    // replaces the tree contents with the given records, building it bottom-up in one pass.
+    // Input that is already sorted by ID (like partfile.txt) is used as-is, otherwise it is
+    // sorted once. For duplicate IDs the first record wins, same as insert().
+    public void bulkLoad(List<PartRecord> records) {
+        List<PartRecord> sorted = records;
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i - 1).id.compareTo(records.get(i).id) > 0) {
+                sorted = new ArrayList<>(records);
+                sorted.sort(Comparator.comparing(r -> r.id)); // stable, so first duplicate stays first
+                break;
+            }
+        }
+
+        // pack leaves up to the fill factor and link the leaf chain
+        List<Node> level = new ArrayList<>();
+        List<String> firstKeys = new ArrayList<>();
+        List<PartRecord> unique = new ArrayList<>(sorted.size());
+        for (PartRecord r : sorted) {
+            if (!unique.isEmpty() && unique.get(unique.size() - 1).id.equals(r.id)) continue;
+            unique.add(r);
+        }
+        int leafCap = Math.max(LEAF_MIN, Math.min(LEAF_MAX, (int) Math.round(LEAF_MAX * bulkFillFactor)));
+        LeafNode prevLeaf = null;
+        for (int[] range : evenGroups(unique.size(), leafCap, LEAF_MIN)) {
+            LeafNode leaf = newLeaf();
+            for (int i = range[0]; i < range[1]; i++) leaf.append(unique.get(i));
+            leaf.prev = prevLeaf;
+            if (prevLeaf != null) prevLeaf.next = leaf;
+            prevLeaf = leaf;
+            level.add(leaf);
+            firstKeys.add(leaf.records[0].id);
+        }
+        if (descIndex != null) descIndex.rebuild(unique);
+        if (hotCache != null) hotCache.clear();
+        if (bloom != null) rebuildBloom(unique, unique.size());
+        if (level.isEmpty()) {
+            root = newLeaf();
+            leafCount = 1;
+            return;
+        }
+        leafCount = level.size();
+
+        // build internal levels until a single root remains
+        int childCap = Math.max(INTERNAL_MIN + 1, Math.min(INTERNAL_MAX + 1, (int) Math.round((INTERNAL_MAX + 1) * bulkFillFactor)));
+        while (level.size() > 1) {
+            List<Node> upper = new ArrayList<>();
+            List<String> upperKeys = new ArrayList<>();
+            for (int[] range : evenGroups(level.size(), childCap, INTERNAL_MIN + 1)) {
+                InternalNode in = newInternal();
+                for (int i = range[0]; i < range[1]; i++) {
+                    Node child = level.get(i);
+                    child.parent = in;
+                    in.children[i - range[0]] = child;
+                    in.counts[i - range[0]] = subtreeCount(child);
+                    if (i > range[0]) in.setKey(in.numKeys++, firstKeys.get(i)); // separator = first key of right child
+                }
+                upper.add(in);
+                upperKeys.add(firstKeys.get(range[0]));
+            }
+            level = upper;
+            firstKeys = upperKeys;
+        }
+        root = level.get(0);
+        root.parent = null;
+    }
+
+    // splits n items into the fewest groups of at most cap items, with sizes as even as possible.
+    // If that would leave groups below min, fewer (fuller) groups are used; with min <= max/2
+    // they still never exceed the node maximum.
+    static List<int[]> evenGroups(int n, int cap, int min) {
+        List<int[]> groups = new ArrayList<>();
+        if (n == 0) return groups;
+        int count = (n + cap - 1) / cap;
+        while (count > 1 && n / count < min) count--;
+        int base = n / count, extra = n % count, start = 0;
+        for (int g = 0; g < count; g++) {
+            int end = start + base + (g < extra ? 1 : 0);
+            groups.add(new int[]{start, end});
+            start = end;
+        }
+        return groups;
+    }
+
+    // target leaf/internal occupancy used by bulkLoad, between 0 and 1
+    public void setBulkFillFactor(double fillFactor) {
+        if (fillFactor <= 0 || fillFactor > 1) throw new IllegalArgumentException("fill factor must be in (0, 1]");
+        this.bulkFillFactor = fillFactor;
+    }
+
+    // writes all records out in key order.
+    // Writes into same fixed-width-ish format: ID in columns 1-7, blanks 8-15, description starting at col 16
+    public void saveToFile(String filename) throws IOException {
+        long start = System.nanoTime();
+        writePartFile(iterator(null, null), filename);
+        timed(TreeMetrics.Op.SAVE, start);
+    }
+
+    static void writePartFile(Iterator<PartRecord> records, String filename) throws IOException {
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(filename))) {
+            while (records.hasNext()) {
+                PartRecord r = records.next();
+                String idField = String.format("%-7s", r.id);
+                String descField = r.description == null ? "" : r.description;
+                if (descField.length() > 65) descField = descField.substring(0, 65);
+                // preserve spacing between columns 7 and 16
+                String line = idField + String.format("%8s", "") + String.format("%-65s", descField);
+                bw.write(line);
+                bw.newLine();
+            }
+        }
+    }
+
+    // root node, for classes that build on this tree's nodes (ConcurrentBPlusTree)
+    Node getRoot() {
+        return root;
+    }
+
+    private LeafNode getRightmostLeaf() {
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            node = in.children[in.childCount() - 1];
+        }
+        return (LeafNode) node;
+    }
+
+    private LeafNode getLeftmostLeaf() {
+        Node node = root;
+        while (!node.isLeaf) node = ((InternalNode) node).children[0];
+        return (LeafNode) node;
+    }
+
+    // -------------------- UTIL / STATS --------------------
+    public int computeDepth() {
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            depth++;
+            if (node.isLeaf) break;
+            node = ((InternalNode) node).children[0];
+        }
+        return depth;
+    }
+
+    public int countLeaves() {
+        int count = 0;
+        for (LeafNode cur = getLeftmostLeaf(); cur != null; cur = cur.next) count++;
+        return count;
+    }
+
+    // average leaf occupancy as a fraction of LEAF_MAX
+    public double averageLeafFill() {
+        int leaves = countLeaves();
+        if (leaves == 0) return 0;
+        return countAllRecords() / (double) (leaves * LEAF_MAX);
+    }
+
+    public int countAllRecords() {
+        return count();
+    }
+
+    // -------------------- DELETE --------------------
+    // removes the record with this ID; returns false if it isn't in the tree.
+    // Underfull leaves borrow from or merge with a sibling, and merges propagate upwards.
+    public boolean delete(String id) {
+        if (!TreeMetrics.ENABLED || metrics == null) return doDelete(id);
+        long start = System.nanoTime();
+        boolean deleted = doDelete(id);
+        metrics.record(TreeMetrics.Op.DELETE, start);
+        return deleted;
+    }
+
+    private boolean doDelete(String id) {
+        if (id == null) return false;
+
+        LeafNode leaf = findLeaf(id);
+        if (!leaf.contains(id)) return false; // ID not found
+        leaf = writable(leaf);
+        PartRecord removed = leaf.deleteRecord(id);
+        adjustCounts(leaf, id, -1);
+        if (descIndex != null) descIndex.remove(removed);
+        if (hotCache != null) hotCache.remove(id);
+        if (bloom != null) bloomStaleDeletes++;
+
+        if (leaf != root && leaf.size() < LEAF_MIN) rebalanceLeaf(leaf);
+        // deleted IDs keep passing the filter until it is rebuilt
+        if (bloom != null && bloomStaleDeletes > Math.max(64, bloom.added() / 8)) rebuildBloom();
+        return true;
+    }
+
+    // -------------------- REBALANCE LEAF --------------------
+    private void rebalanceLeaf(LeafNode leaf) {
+        InternalNode parent = leaf.parent;
+        int idx = parent.indexOfChild(leaf);
+        // only siblings under the same parent are used, so only one separator changes
+        LeafNode left = idx > 0 ? (LeafNode) parent.children[idx - 1] : null;
+        LeafNode right = idx < parent.numKeys ? (LeafNode) parent.children[idx + 1] : null;
+
+        if (left != null && left.size() > LEAF_MIN) {
+            // borrow the largest record of the left sibling
+            left = writable(left);
+            leaf.insertSorted(left.removeAt(left.size() - 1));
+            parent.setKey(idx - 1, leaf.records[0].id);
+            parent.counts[idx - 1]--;
+            parent.counts[idx]++;
+            return;
+        }
+        if (right != null && right.size() > LEAF_MIN) {
+            // borrow the smallest record of the right sibling
+            right = writable(right);
+            leaf.append(right.removeAt(0));
+            parent.setKey(idx, right.records[0].id);
+            parent.counts[idx]++;
+            parent.counts[idx + 1]--;
+            return;
+        }
+
+        // neither sibling can spare a record: merge with one of them (the merge empties the
+        // right leaf, so a shared sibling is copied either way)
+        if (left != null) {
+            mergeLeaves(writable(left), leaf, parent, idx - 1);
+        } else {
+            mergeLeaves(leaf, writable(right), parent, idx);
+        }
+        totalFusions++;
+        afterChildRemoved(parent);
+    }
+
+    // moves every record of right into left, unlinks right and drops separator sepIdx
+    private void mergeLeaves(LeafNode left, LeafNode right, InternalNode parent, int sepIdx) {
+        right.moveTailTo(0, left);
+        left.next = right.next;
+        if (right.next != null) right.next.prev = left;
+        right.next = null;
+        right.prev = null;
+        right.parent = null;
+        parent.removeKeyAndRightChild(sepIdx);
+        parent.counts[sepIdx] = left.size;
+        leafCount--;
+    }
+
+    // -------------------- REBALANCE INTERNAL --------------------
+    // called after node lost a child: shrinks the root or fixes an underfull internal node
+    private void afterChildRemoved(InternalNode node) {
+        if (node == root) {
+            if (node.numKeys == 0) {
+                // root has a single child left: the tree gets one level shorter
+                root = node.children[0];
+                root.parent = null;
+            }
+            return;
+        }
+        if (node.numKeys < INTERNAL_MIN) rebalanceInternal(node);
+    }
+
+    private void rebalanceInternal(InternalNode node) {
+        InternalNode parent = node.parent;
+        int idx = parent.indexOfChild(node);
+        InternalNode left = idx > 0 ? (InternalNode) parent.children[idx - 1] : null;
+        InternalNode right = idx < parent.numKeys ? (InternalNode) parent.children[idx + 1] : null;
+
+        if (left != null && left.numKeys > INTERNAL_MIN) {
+            // rotate right: separator comes down, left's last key goes up
+            left = writable(left);
+            Node moved = left.children[left.numKeys];
+            int movedCount = left.counts[left.numKeys];
+            String up = left.key(left.numKeys - 1);
+            left.removeLast();
+            node.insertFirst(moved, parent.key(idx - 1), movedCount);
+            moved.parent = node;
+            parent.setKey(idx - 1, up);
+            parent.counts[idx - 1] -= movedCount;
+            parent.counts[idx] += movedCount;
+            return;
+        }
+        if (right != null && right.numKeys > INTERNAL_MIN) {
+            // rotate left: separator comes down, right's first key goes up
+            right = writable(right);
+            Node moved = right.children[0];
+            int movedCount = right.counts[0];
+            String up = right.key(0);
+            right.removeFirst();
+            node.append(parent.key(idx), moved, movedCount);
+            moved.parent = node;
+            parent.setKey(idx, up);
+            parent.counts[idx] += movedCount;
+            parent.counts[idx + 1] -= movedCount;
+            return;
+        }
+
+        // the right node is only read by the merge, so only a shared left node needs a copy
+        if (left != null) {
+            mergeInternal(writable(left), node, parent, idx - 1);
+        } else {
+            mergeInternal(node, right, parent, idx);
+        }
+        totalFusions++;
+        parentFusions++;
+        afterChildRemoved(parent);
+    }
+
+    // pulls separator sepIdx down between left and right and moves right's entries into left
+    private void mergeInternal(InternalNode left, InternalNode right, InternalNode parent, int sepIdx) {
+        left.append(parent.key(sepIdx), right.children[0], right.counts[0]);
+        right.children[0].parent = left;
+        for (int i = 0; i < right.numKeys; i++) {
+            left.append(right.key(i), right.children[i + 1], right.counts[i + 1]);
+            right.children[i + 1].parent = left;
+        }
+        right.parent = null;
+        parent.removeKeyAndRightChild(sepIdx);
+        parent.counts[sepIdx] = left.totalCount();
+    }
+
+    // verifies ordering, separator bounds, node occupancy, parent links, uniform depth and the
+    // leaf chain; throws IllegalStateException describing the first violation
+    public void checkInvariants() {
+        TreeInvariants.check(root, LEAF_MAX, INTERNAL_MAX, LEAF_MIN, INTERNAL_MIN, true);
+        int leaves = countLeaves();
+        if (leaves != leafCount) throw new IllegalStateException("leaf count is " + leafCount + " but the chain has " + leaves + " leaves");
+    }
+
+    public void printStats() {
+        System.out.println("Statistics:");
+        System.out.println(" Total splits: " + totalSplits);
+        System.out.println(" Parent splits: " + parentSplits);
+        System.out.println(" Total fusions: " + totalFusions);
+        System.out.println(" Parent fusions: " + parentFusions);
+        System.out.println(" Tree depth: " + computeDepth());
+        System.out.println(" Total records: " + countAllRecords());
+        System.out.println(" Leaves: " + countLeaves());
+        System.out.printf(" Average leaf fill: %.1f%%%n", averageLeafFill() * 100);
+        if (bloom != null) {
+            System.out.printf(" Bloom filter: %d IDs in %d KB, %d hashes, expected false positives %.3f%%; "
+                            + "%d searches answered, %d false positives, %d rebuilds%n",
+                    bloom.added(), bloom.sizeInBytes() / 1024, bloom.hashes(), bloom.expectedFalsePositiveRate() * 100,
+                    bloomNegatives, bloomFalsePositives, bloomRebuilds);
+        }
+        if (hotCache != null) System.out.println(" " + hotCache);
+        if (metrics != null) {
+            metrics.refresh();
+            System.out.print(metrics.getText());
+        }
+    }
+}
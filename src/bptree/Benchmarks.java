@@ -0,0 +1,1351 @@
+package bptree;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Simple timing harness for comparing tree operations.
+// Usage: java bptree.Benchmarks <mode> [partfile]
+//   load  - bulk load vs. one-by-one insert of the part file
+//   parse - memory-mapped PartFileReader vs. readAllLines + regex split
+//   fanout [records] - insert and lookup throughput as the tree order changes
+//   paged [partfile] - PagedBPlusTree load/search with different buffer pool sizes
+//   concurrent [maxThreads] - mixed-operation stress test of ConcurrentBPlusTree with invariant checks
+//   keys [records] - heap per record and lookup latency, packed long keys vs. String keys
+//   churn [records] - repeated delete/insert rounds; tracks depth and leaf occupancy
+//   wal [threads] - commit latency and recovery time of DurableBPlusTree per fsync mode
+//   batch [records] - searchAll/insertAll vs. per-key search/insert loops
+//   range [records] - scanFrom copies vs. lazy range streams (sequential and parallel) for aggregates
+//   text [records] - description index vs. linear leaf scan for keyword/prefix queries; index upkeep cost
+//   rank [records] - count/countRange/rank/page from subtree counts vs. walking the leaves
+//   snapshot [records] - save/startup time and file size, text part file vs. binary snapshot
+//   ingest [records] - ParallelLoader throughput per phase at 1, 2, 4, 8, 16 workers vs. the sequential load
+//   sharded [maxThreads] - mixed read/write throughput of ShardedPartIndex vs. one lock and ConcurrentBPlusTree
+//   cow [records] - write cost with open snapshots, heap kept alive by a snapshot, saving a snapshot during writes
+//   metrics [records] - cost of TreeMetrics per operation (run once more with -Dbptree.metrics=off) and its dumps
+//   server [maxConnections] - PartServer req/s and tail latency over loopback, with and without pipelining
+//   lookup [records] - Bloom filter and hot-record cache (LRU vs. W-TinyLFU) hit rates and search latency per workload
+//   offheap [records] - heap size, GC pauses and lookup/scan throughput, on-heap records vs. OffHeapBPlusTree
+public class Benchmarks {
+
+    public static void main(String[] args) throws IOException {
+        String mode = args.length >= 1 ? args[0] : "load";
+        String filename = args.length >= 2 ? args[1] : "partfile.txt";
+
+        switch (mode) {
+            case "load":
+                benchLoad(filename);
+                break;
+            case "parse":
+                benchParse(filename);
+                break;
+            case "fanout":
+                benchFanout(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "paged":
+                benchPaged(filename);
+                break;
+            case "concurrent":
+                benchConcurrent(args.length >= 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors());
+                break;
+            case "keys":
+                benchKeys(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "churn":
+                benchChurn(args.length >= 2 ? Integer.parseInt(args[1]) : 500_000);
+                break;
+            case "wal":
+                benchWal(args.length >= 2 ? Integer.parseInt(args[1]) : 8);
+                break;
+            case "batch":
+                benchBatch(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "range":
+                benchRange(args.length >= 2 ? Integer.parseInt(args[1]) : 2_000_000);
+                break;
+            case "text":
+                benchText(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "rank":
+                benchRank(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "snapshot":
+                benchSnapshot(args.length >= 2 ? Integer.parseInt(args[1]) : 2_000_000);
+                break;
+            case "ingest":
+                benchIngest(args.length >= 2 ? Integer.parseInt(args[1]) : 5_000_000);
+                break;
+            case "sharded":
+                benchSharded(args.length >= 2 ? Integer.parseInt(args[1]) : 16);
+                break;
+            case "cow":
+                benchCow(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "metrics":
+                benchMetrics(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "server":
+                benchServer(args.length >= 2 ? Integer.parseInt(args[1]) : 64);
+                break;
+            case "lookup":
+                benchLookup(args.length >= 2 ? Integer.parseInt(args[1]) : 1_000_000);
+                break;
+            case "offheap":
+                benchOffHeap(args.length >= 2 ? Integer.parseInt(args[1]) : 2_000_000);
+                break;
+            default:
+                System.out.println("Unknown mode: " + mode);
+        }
+    }
+
+    // -------------------- LOAD --------------------
+    private static void benchLoad(String filename) throws IOException {
+        int rounds = 5;
+        for (int round = 1; round <= rounds; round++) {
+            BPlusTree insertTree = new BPlusTree();
+            long t0 = System.nanoTime();
+            insertTree.loadFromFile(filename, false);
+            long insertNs = System.nanoTime() - t0;
+
+            BPlusTree bulkTree = new BPlusTree();
+            t0 = System.nanoTime();
+            bulkTree.loadFromFile(filename, true);
+            long bulkNs = System.nanoTime() - t0;
+
+            System.out.printf("round %d: insert %.1f ms (%d leaves, fill %.1f%%, depth %d) | "
+                            + "bulk %.1f ms (%d leaves, fill %.1f%%, depth %d)%n",
+                    round,
+                    insertNs / 1e6, insertTree.countLeaves(), insertTree.averageLeafFill() * 100, insertTree.computeDepth(),
+                    bulkNs / 1e6, bulkTree.countLeaves(), bulkTree.averageLeafFill() * 100, bulkTree.computeDepth());
+        }
+    }
+
+    // -------------------- PARSE --------------------
+    private static void benchParse(String filename) throws IOException {
+        long bytes = Files.size(Paths.get(filename));
+        int rounds = 10;
+        for (int round = 1; round <= rounds; round++) {
+            long t0 = System.nanoTime();
+            long lineRecords = 0;
+            for (String line : Files.readAllLines(Paths.get(filename))) {
+                if (BPlusTree.parseLine(line) != null) lineRecords++;
+            }
+            long linesNs = System.nanoTime() - t0;
+
+            PartFileReader.LoadStats mapped = new PartFileReader().read(filename, r -> { });
+
+            System.out.printf("round %d: readAllLines %.1f ms (%.1f MB/s, %.0f records/s) | mapped %s%n",
+                    round, linesNs / 1e6, bytes * 1e3 / linesNs, lineRecords * 1e9 / linesNs, mapped);
+        }
+    }
+
+    // -------------------- FANOUT --------------------
+    private static void benchFanout(int n) {
+        List<PartRecord> records = syntheticRecords(n);
+        Collections.shuffle(records, new Random(42));
+        Random rnd = new Random(7);
+        String[] probes = new String[n];
+        for (int i = 0; i < n; i++) probes[i] = records.get(rnd.nextInt(n)).id;
+
+        for (int order : new int[]{4, 8, 16, 32, 64, 128, 256, 512}) {
+            // run twice so the second pass is measured on warmed-up code
+            for (int pass = 0; pass < 2; pass++) {
+                BPlusTree tree = new BPlusTree(order);
+                long t0 = System.nanoTime();
+                for (PartRecord r : records) tree.insert(r);
+                long insertNs = System.nanoTime() - t0;
+
+                int hits = 0;
+                t0 = System.nanoTime();
+                for (String id : probes) if (tree.search(id) != null) hits++;
+                long searchNs = System.nanoTime() - t0;
+
+                if (pass == 1) {
+                    System.out.printf("order %4d: depth %2d | insert %,10.0f ops/s | search %,10.0f ops/s (%d hits)%n",
+                            order, tree.computeDepth(), n * 1e9 / insertNs, n * 1e9 / searchNs, hits);
+                }
+            }
+        }
+    }
+
+    // -------------------- PAGED --------------------
+    private static void benchPaged(String filename) throws IOException {
+        List<PartRecord> records = new ArrayList<>();
+        new PartFileReader().read(filename, records::add);
+        Random rnd = new Random(7);
+
+        for (int poolPages : new int[]{16, 64, 256, 1024}) {
+            Path path = Files.createTempFile("bptree", ".db");
+            try (PagedBPlusTree tree = new PagedBPlusTree(path, PagedBPlusTree.DEFAULT_PAGE_SIZE, poolPages)) {
+                long t0 = System.nanoTime();
+                for (PartRecord r : records) tree.insert(r);
+                tree.flush();
+                long loadNs = System.nanoTime() - t0;
+
+                BufferPool pool = tree.bufferPool();
+                pool.hits = pool.misses = 0;
+                int n = 200_000;
+                t0 = System.nanoTime();
+                for (int i = 0; i < n; i++) tree.search(records.get(rnd.nextInt(records.size())).id);
+                long searchNs = System.nanoTime() - t0;
+
+                System.out.printf("pool %4d pages: load %.1f ms | search %,10.0f ops/s, %.1f%% pool hits | file %d KB%n",
+                        poolPages, loadNs / 1e6, n * 1e9 / searchNs, pool.hitRate() * 100, Files.size(path) / 1024);
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    // -------------------- CONCURRENT --------------------
+    private static void benchConcurrent(int maxThreads) throws IOException {
+        int preload = 200_000;
+        int opsPerThread = 200_000;
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) threadCounts.add(t);
+        threadCounts.add(maxThreads);
+
+        for (int threads : threadCounts) {
+            BPlusTree base = new BPlusTree();
+            base.bulkLoad(syntheticRecords(preload));
+            ConcurrentBPlusTree tree = new ConcurrentBPlusTree(base);
+            ConcurrentHashMap<String, Boolean> present = new ConcurrentHashMap<>();
+            for (int i = 0; i < preload; i++) present.put(syntheticId(i), true);
+
+            Thread[] workers = new Thread[threads];
+            Throwable[] failure = new Throwable[1];
+            long t0 = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                workers[t] = new Thread(() -> {
+                    Random rnd = new Random(worker);
+                    // each worker inserts/deletes its own key range so the expected set is exact
+                    int ownBase = preload + worker * opsPerThread;
+                    try {
+                        for (int i = 0; i < opsPerThread; i++) {
+                            int op = rnd.nextInt(100);
+                            if (op < 70) {
+                                tree.search(syntheticId(rnd.nextInt(preload)));
+                            } else if (op < 85) {
+                                String id = syntheticId(ownBase + i);
+                                if (tree.insert(new PartRecord(id, "NEW"))) present.put(id, true);
+                            } else if (op < 90) {
+                                String id = syntheticId(ownBase + rnd.nextInt(i + 1));
+                                if (tree.delete(id)) present.remove(id);
+                            } else if (op < 95) {
+                                tree.update(syntheticId(rnd.nextInt(preload)), "UPDATED " + i);
+                            } else {
+                                List<PartRecord> page = tree.scanFrom(syntheticId(rnd.nextInt(preload)), 50);
+                                for (int k = 1; k < page.size(); k++) {
+                                    if (page.get(k - 1).id.compareTo(page.get(k).id) >= 0) throw new IllegalStateException("scan out of order");
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                });
+                workers[t].start();
+            }
+            for (Thread w : workers) {
+                try {
+                    w.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            long ns = System.nanoTime() - t0;
+            if (failure[0] != null) throw new IllegalStateException("worker failed", failure[0]);
+
+            tree.checkInvariants();
+            int count = tree.countAllRecords();
+            if (count != present.size()) throw new IllegalStateException("expected " + present.size() + " records, found " + count);
+            for (String id : present.keySet()) {
+                if (tree.search(id) == null) throw new IllegalStateException("missing " + id);
+            }
+            System.out.printf("%2d threads: %,12.0f ops/s | %d records, depth %d, invariants ok%n",
+                    threads, (long) threads * opsPerThread * 1e9 / ns, count, tree.computeDepth());
+        }
+    }
+
+    // -------------------- KEYS --------------------
+    // Both trees are built once and stay reachable until the end, so each heap figure is the
+    // difference of two medians of GC'd samples rather than of one noisy reading. Packed keys
+    // trade memory for compare speed: a long[] slot costs 8 bytes where a String key is a 4-byte
+    // compressed reference to the record's own ID, and InternalNode.key(i) decodes (allocates) a
+    // String each time a separator is read back as one.
+    private static void benchKeys(int n) {
+        List<PartRecord> records = syntheticRecords(n);
+        Random rnd = new Random(7);
+        String[] probes = new String[n];
+        // fresh String copies so lookups can't short-circuit on identical references
+        for (int i = 0; i < n; i++) probes[i] = new String(records.get(rnd.nextInt(n)).id.toCharArray());
+
+        boolean[] modes = {false, true};
+        BPlusTree[] trees = new BPlusTree[modes.length];
+        long[] indexBytes = new long[modes.length];
+        long before = stableHeap();
+        for (int m = 0; m < modes.length; m++) {
+            trees[m] = new BPlusTree(BPlusTree.DEFAULT_ORDER, BPlusTree.DEFAULT_ORDER, modes[m]);
+            for (PartRecord r : records) trees[m].insert(r);
+            long after = stableHeap();
+            indexBytes[m] = after - before;
+            before = after;
+        }
+
+        // alternate the trees round by round so drift in the machine hits both alike
+        int warmup = 2, rounds = 7;
+        long[][] searchNs = new long[modes.length][rounds];
+        int[] hits = new int[modes.length];
+        for (int round = 0; round < warmup + rounds; round++) {
+            for (int m = 0; m < modes.length; m++) {
+                int h = 0;
+                long t0 = System.nanoTime();
+                for (String id : probes) if (trees[m].search(id) != null) h++;
+                long ns = System.nanoTime() - t0;
+                hits[m] = h;
+                if (round >= warmup) searchNs[m][round - warmup] = ns;
+            }
+        }
+
+        for (int m = 0; m < modes.length; m++) {
+            Arrays.sort(searchNs[m]);
+            System.out.printf("%-6s keys: index %5.1f bytes/record (excluding PartRecords) | search %6.1f ns/op median of %d (%d hits)%n",
+                    modes[m] ? "long" : "String", indexBytes[m] / (double) n, percentile(searchNs[m], 50) / (double) n, rounds, hits[m]);
+        }
+        System.out.println("long keys cost 8 bytes per slot against a 4-byte reference to the shared ID String,"
+                + " and reading a separator back as a String (InternalNode.key) allocates one");
+    }
+
+    // median of several GC'd heap readings
+    private static long stableHeap() {
+        long[] samples = new long[5];
+        for (int i = 0; i < samples.length; i++) samples[i] = usedHeap();
+        Arrays.sort(samples);
+        return percentile(samples, 50);
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    // -------------------- CHURN --------------------
+    // each round deletes half of the live records at random and inserts as many new ones
+    private static void benchChurn(int n) {
+        int universe = 4 * n;
+        BPlusTree tree = new BPlusTree();
+        Random rnd = new Random(11);
+        List<String> live = new ArrayList<>();
+        List<PartRecord> initial = new ArrayList<>();
+        for (int i = 0; i < universe; i += 4) {
+            initial.add(new PartRecord(syntheticId(i), "PART " + i));
+            live.add(syntheticId(i));
+        }
+        tree.bulkLoad(initial);
+        printChurnRound(tree, 0, 0, 0);
+
+        for (int round = 1; round <= 10; round++) {
+            Collections.shuffle(live, rnd);
+            int half = live.size() / 2;
+            long t0 = System.nanoTime();
+            for (int i = 0; i < half; i++) tree.delete(live.get(live.size() - 1 - i));
+            long deleteNs = System.nanoTime() - t0;
+            live.subList(live.size() - half, live.size()).clear();
+
+            int inserted = 0;
+            t0 = System.nanoTime();
+            while (inserted < half) {
+                String id = syntheticId(rnd.nextInt(universe));
+                if (tree.insert(new PartRecord(id, "CHURN " + round))) {
+                    live.add(id);
+                    inserted++;
+                }
+            }
+            long insertNs = System.nanoTime() - t0;
+            tree.checkInvariants();
+            printChurnRound(tree, round, half * 1e9 / deleteNs, half * 1e9 / insertNs);
+        }
+    }
+
+    private static void printChurnRound(BPlusTree tree, int round, double deletesPerSec, double insertsPerSec) {
+        System.out.printf("round %2d: %d records, depth %d, %d leaves, fill %.1f%%, fusions %d (parent %d) | "
+                        + "delete %,.0f ops/s, insert %,.0f ops/s%n",
+                round, tree.countAllRecords(), tree.computeDepth(), tree.countLeaves(), tree.averageLeafFill() * 100,
+                tree.totalFusions, tree.parentFusions, deletesPerSec, insertsPerSec);
+    }
+
+    // -------------------- WAL --------------------
+    private static void benchWal(int threads) throws IOException {
+        int opsPerThread = 2_000;
+        for (WriteAheadLog.SyncMode mode : WriteAheadLog.SyncMode.values()) {
+            Path dir = Files.createTempDirectory("bptree-wal");
+            DurableBPlusTree tree = new DurableBPlusTree(dir, mode);
+            tree.setCheckpointBytes(Long.MAX_VALUE); // recovery replays the whole log
+
+            long[][] latencies = new long[threads][opsPerThread];
+            Thread[] workers = new Thread[threads];
+            IOException[] failure = new IOException[1];
+            long t0 = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                workers[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < opsPerThread; i++) {
+                            long start = System.nanoTime();
+                            tree.insert(new PartRecord(syntheticId(worker * opsPerThread + i), "WAL TEST"));
+                            latencies[worker][i] = System.nanoTime() - start;
+                        }
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                workers[t].start();
+            }
+            joinAll(workers);
+            long ns = System.nanoTime() - t0;
+            if (failure[0] != null) throw failure[0];
+            long fsyncs = tree.fsyncs();
+            tree.close();
+
+            DurableBPlusTree reopened = new DurableBPlusTree(dir, mode);
+            long recoveryNs = reopened.recoveryNanos;
+            int recovered = reopened.recoveredLogEntries;
+            reopened.close();
+            deleteTree(dir);
+
+            long[] all = flatten(latencies);
+            int commits = threads * opsPerThread;
+            System.out.printf("%-8s %2d threads: %,9.0f commits/s | latency p50 %7.1f us, p99 %8.1f us, max %8.1f us | "
+                            + "%.1f commits/fsync | recovery %d entries in %.1f ms%n",
+                    mode, threads, commits * 1e9 / ns, percentile(all, 50) / 1e3, percentile(all, 99) / 1e3,
+                    all[all.length - 1] / 1e3, fsyncs == 0 ? 0.0 : commits / (double) fsyncs, recovered, recoveryNs / 1e6);
+        }
+    }
+
+    private static void joinAll(Thread[] threads) {
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // all samples in one sorted array
+    private static long[] flatten(long[][] samples) {
+        int n = 0;
+        for (long[] s : samples) n += s.length;
+        long[] all = new long[n];
+        int pos = 0;
+        for (long[] s : samples) {
+            System.arraycopy(s, 0, all, pos, s.length);
+            pos += s.length;
+        }
+        Arrays.sort(all);
+        return all;
+    }
+
+    // p-th percentile of a sorted array
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Collections.reverseOrder()).toArray(Path[]::new)) Files.delete(p);
+        }
+    }
+
+    // -------------------- BATCH --------------------
+    // each shape runs on fresh trees for a few warm-up rounds, then the median of the measured rounds
+    private static void benchBatch(int n) {
+        // even synthetic IDs are loaded, odd ones are inserted by the batches
+        List<PartRecord> base = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) base.add(new PartRecord(syntheticId(2 * i), "BASE " + i));
+        int batchSize = Math.max(1, n / 10);
+        int warmup = 5, rounds = 15;
+        Random rnd = new Random(5);
+
+        for (String shape : new String[]{"random", "clustered", "sorted"}) {
+            List<String> ids = new ArrayList<>(batchSize);
+            List<PartRecord> fresh = new ArrayList<>(batchSize);
+            int start = rnd.nextInt(n - batchSize / 4);
+            for (int i = 0; i < batchSize; i++) {
+                int k;
+                if (shape.equals("random")) k = rnd.nextInt(n);
+                else if (shape.equals("clustered")) k = start + rnd.nextInt(batchSize / 4);
+                else k = start + i * (n - start) / batchSize;
+                ids.add(syntheticId(2 * k));
+                fresh.add(new PartRecord(syntheticId(2 * k + 1), "NEW " + i));
+            }
+            if (shape.equals("sorted")) Collections.sort(ids);
+
+            long[] loopSearch = new long[rounds], batchSearch = new long[rounds];
+            long[] loopInsert = new long[rounds], batchInsert = new long[rounds];
+            int loopSplits = 0, batchSplits = 0;
+            for (int round = 0; round < warmup + rounds; round++) {
+                BPlusTree loopTree = new BPlusTree();
+                loopTree.bulkLoad(base);
+                BPlusTree batchTree = new BPlusTree();
+                batchTree.bulkLoad(base);
+                int r = round - warmup;
+
+                long t0 = System.nanoTime();
+                int hits = 0;
+                for (String id : ids) if (loopTree.search(id) != null) hits++;
+                long ls = System.nanoTime() - t0;
+                t0 = System.nanoTime();
+                List<PartRecord> found = batchTree.searchAll(ids);
+                long bs = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                for (PartRecord rec : fresh) loopTree.insert(rec);
+                long li = System.nanoTime() - t0;
+                t0 = System.nanoTime();
+                batchTree.insertAll(fresh);
+                long bi = System.nanoTime() - t0;
+
+                if (hits != batchSize || found.size() != batchSize) throw new IllegalStateException("lookups missed");
+                if (r < 0) continue;
+                loopSearch[r] = ls;
+                batchSearch[r] = bs;
+                loopInsert[r] = li;
+                batchInsert[r] = bi;
+                loopSplits = loopTree.totalSplits;
+                batchSplits = batchTree.totalSplits;
+            }
+            for (long[] a : new long[][]{loopSearch, batchSearch, loopInsert, batchInsert}) Arrays.sort(a);
+            System.out.printf("%-9s batch of %d, median of %d: search loop %6.2f ms, searchAll %6.2f ms | "
+                            + "insert loop %6.2f ms (%d splits), insertAll %6.2f ms (%d splits)%n",
+                    shape, batchSize, rounds, percentile(loopSearch, 50) / 1e6, percentile(batchSearch, 50) / 1e6,
+                    percentile(loopInsert, 50) / 1e6, loopSplits, percentile(batchInsert, 50) / 1e6, batchSplits);
+        }
+    }
+
+    private static void benchRange(int n) {
+        BPlusTree tree = new BPlusTree();
+        tree.bulkLoad(syntheticRecords(n));
+        System.out.println("records: " + n + ", cores: " + Runtime.getRuntime().availableProcessors());
+
+        // full table, then a 10% slice from the middle; the aggregate is the total description length
+        String[][] ranges = {{syntheticId(0), null}, {syntheticId(n / 2), syntheticId(n / 2 + n / 10)}};
+        int[] counts = {n, n / 10};
+        for (int r = 0; r < ranges.length; r++) {
+            String lo = ranges[r][0], hi = ranges[r][1];
+            int count = counts[r];
+            for (int pass = 0; pass < 3; pass++) { // last pass is measured on warmed-up code
+                long heap0 = usedHeap();
+                long t0 = System.nanoTime();
+                List<PartRecord> copy = tree.scanFrom(lo, count);
+                long copied = 0;
+                for (PartRecord rec : copy) copied += rec.description.length();
+                long copyNs = System.nanoTime() - t0;
+                long copyHeap = usedHeap() - heap0;
+                if (copy.size() != count) throw new IllegalStateException("scanFrom returned " + copy.size()); // keeps the list reachable for usedHeap
+
+                t0 = System.nanoTime();
+                long lazy = 0;
+                for (Iterator<PartRecord> it = tree.iterator(lo, hi); it.hasNext(); ) lazy += it.next().description.length();
+                long iterNs = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                long seq = tree.range(lo, hi).mapToLong(rec -> rec.description.length()).sum();
+                long seqNs = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                long par = tree.range(lo, hi).parallel().mapToLong(rec -> rec.description.length()).sum();
+                long parNs = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                long desc = tree.descendingRange(lo, hi).mapToLong(rec -> rec.description.length()).sum();
+                long descNs = System.nanoTime() - t0;
+
+                if (copied != lazy || lazy != seq || seq != par || par != desc) {
+                    throw new IllegalStateException("range aggregates disagree: " + copied + " " + lazy + " " + seq + " " + par + " " + desc);
+                }
+                if (pass == 2) {
+                    System.out.printf("%-6s %8d records: scanFrom %7.1f ms (%d KB list) | iterator %7.1f ms | "
+                                    + "stream %7.1f ms | parallel %7.1f ms | descending %7.1f ms%n",
+                            r == 0 ? "full" : "slice", count, copyNs / 1e6, Math.max(0, copyHeap) >> 10,
+                            iterNs / 1e6, seqNs / 1e6, parNs / 1e6, descNs / 1e6);
+                }
+            }
+        }
+    }
+
+    private static void benchText(int n) throws IOException {
+        // real descriptions from partfile.txt, repeated over n synthetic IDs
+        List<String> descs = new ArrayList<>();
+        new PartFileReader().read("partfile.txt", r -> descs.add(r.description));
+        List<PartRecord> records = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) records.add(new PartRecord(syntheticId(i), descs.get(i % descs.size())));
+
+        BPlusTree tree = new BPlusTree();
+        tree.bulkLoad(records);
+        long heap0 = usedHeap();
+        long t0 = System.nanoTime();
+        tree.enableDescriptionIndex();
+        long buildNs = System.nanoTime() - t0;
+        DescriptionIndex index = tree.getDescriptionIndex();
+        System.out.printf("records: %d, tokens: %d, postings: %d, build %.0f ms, ~%d MB%n", n, index.tokenCount(),
+                index.postingCount(), buildNs / 1e6, (usedHeap() - heap0) >> 20);
+
+        for (String query : new String[]{"AILERON", "PP*", "AILERON SKIN", "RIB*", "NOSE RIB LEFT", "ZZZ"}) {
+            long scanNs = 0, indexNs = 0;
+            int hits = 0;
+            for (int pass = 0; pass < 3; pass++) { // last pass is measured on warmed-up code
+                t0 = System.nanoTime();
+                int scanned = tree.scanDescriptions(query).size();
+                scanNs = System.nanoTime() - t0;
+                t0 = System.nanoTime();
+                hits = tree.findByDescription(query).size();
+                indexNs = System.nanoTime() - t0;
+                if (scanned != hits) throw new IllegalStateException(query + ": scan found " + scanned + ", index " + hits);
+            }
+            System.out.printf("%-15s %8d hits: scan %8.1f ms, index %7.2f ms (%.0fx)%n",
+                    '"' + query + '"', hits, scanNs / 1e6, indexNs / 1e6, (double) scanNs / Math.max(1, indexNs));
+        }
+
+        // upkeep: the same insert/update/delete mix with and without the index
+        for (boolean indexed : new boolean[]{false, true}) {
+            BPlusTree t = new BPlusTree();
+            t.bulkLoad(records);
+            if (indexed) t.enableDescriptionIndex();
+            Random rnd = new Random(7);
+            int ops = Math.max(1, n / 5);
+            t0 = System.nanoTime();
+            for (int i = 0; i < ops; i++) {
+                String desc = descs.get(rnd.nextInt(descs.size()));
+                int k = rnd.nextInt(3);
+                if (k == 0) t.insert(new PartRecord(syntheticId(n + i), desc));
+                else if (k == 1) t.update(syntheticId(rnd.nextInt(n)), desc);
+                else t.delete(syntheticId(rnd.nextInt(n)));
+            }
+            System.out.printf("%d mixed writes %s index: %.1f ms%n", ops, indexed ? "with" : "without", (System.nanoTime() - t0) / 1e6);
+        }
+    }
+
+    private static void benchRank(int n) {
+        BPlusTree tree = new BPlusTree();
+        tree.bulkLoad(syntheticRecords(n));
+        Random rnd = new Random(11);
+        int queries = 200;
+
+        for (int pass = 0; pass < 2; pass++) { // second pass is measured on warmed-up code
+            long t0 = System.nanoTime();
+            long walked = 0;
+            for (int q = 0; q < 20; q++) walked += tree.range(null, null).count();
+            long walkCountNs = (System.nanoTime() - t0) / 20;
+            t0 = System.nanoTime();
+            long counted = 0;
+            for (int q = 0; q < 20; q++) counted += tree.count();
+            long countNs = (System.nanoTime() - t0) / 20;
+            if (walked != counted) throw new IllegalStateException("count " + counted + " vs walk " + walked);
+
+            // range counts over random [lo, hi) spans
+            long walkRangeNs = 0, countRangeNs = 0;
+            for (int q = 0; q < queries; q++) {
+                int a = rnd.nextInt(n), b = rnd.nextInt(n);
+                String lo = syntheticId(Math.min(a, b)), hi = syntheticId(Math.max(a, b));
+                t0 = System.nanoTime();
+                long w = tree.range(lo, hi).count();
+                walkRangeNs += System.nanoTime() - t0;
+                t0 = System.nanoTime();
+                int c = tree.countRange(lo, hi);
+                countRangeNs += System.nanoTime() - t0;
+                if (w != c) throw new IllegalStateException("countRange " + c + " vs walk " + w);
+            }
+
+            // page of 20 at a random offset: skip from the start vs. recordAt + lazy range
+            long skipNs = 0, pageNs = 0;
+            for (int q = 0; q < queries; q++) {
+                int offset = rnd.nextInt(n);
+                t0 = System.nanoTime();
+                List<PartRecord> skipped = tree.range(null, null).skip(offset).limit(20).collect(Collectors.toList());
+                skipNs += System.nanoTime() - t0;
+                t0 = System.nanoTime();
+                List<PartRecord> paged = tree.page(offset, 20);
+                pageNs += System.nanoTime() - t0;
+                if (!skipped.equals(paged)) throw new IllegalStateException("page at " + offset + " differs");
+            }
+
+            long rankNs = 0;
+            t0 = System.nanoTime();
+            for (int q = 0; q < 100_000; q++) tree.rank(syntheticId(rnd.nextInt(n)));
+            rankNs = (System.nanoTime() - t0) / 100_000;
+
+            if (pass == 1) {
+                System.out.printf("records: %d, depth %d%n", n, tree.computeDepth());
+                System.out.printf("count:      leaf walk %10.1f us | subtree counts %8.2f us%n", walkCountNs / 1e3, countNs / 1e3);
+                System.out.printf("countRange: leaf walk %10.1f us | subtree counts %8.2f us (avg of %d random ranges)%n",
+                        walkRangeNs / 1e3 / queries, countRangeNs / 1e3 / queries, queries);
+                System.out.printf("page of 20: skip      %10.1f us | recordAt+range %8.2f us (avg of %d random offsets)%n",
+                        skipNs / 1e3 / queries, pageNs / 1e3 / queries, queries);
+                System.out.printf("rank:       %.2f us%n", rankNs / 1e3);
+            }
+        }
+
+        // upkeep: insert/delete throughput with the counts maintained on every path
+        List<PartRecord> extra = new ArrayList<>(n / 2);
+        for (int i = 0; i < n / 2; i++) extra.add(new PartRecord(syntheticId(n + rnd.nextInt(n)), "NEW"));
+        long t0 = System.nanoTime();
+        for (PartRecord r : extra) tree.insert(r);
+        long insertNs = System.nanoTime() - t0;
+        t0 = System.nanoTime();
+        for (PartRecord r : extra) tree.delete(r.id);
+        long deleteNs = System.nanoTime() - t0;
+        tree.checkInvariants();
+        System.out.printf("%d random inserts %.0f ms, deletes %.0f ms; counts verified by checkInvariants%n",
+                extra.size(), insertNs / 1e6, deleteNs / 1e6);
+    }
+
+    private static void benchSnapshot(int n) throws IOException {
+        List<String> descs = new ArrayList<>();
+        new PartFileReader().read("partfile.txt", r -> descs.add(r.description));
+        List<PartRecord> records = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) records.add(new PartRecord(syntheticId(i), descs.get(i % descs.size())));
+        BPlusTree tree = new BPlusTree();
+        tree.bulkLoad(records);
+        records = null;
+
+        Path dir = Files.createTempDirectory("bptree-snapshot");
+        try {
+            String[] formats = {"text", "binary", "binary+deflate"};
+            for (int pass = 0; pass < 3; pass++) { // last pass is measured on warmed-up code
+                for (String format : formats) {
+                    String file = dir.resolve(format).toString();
+                    long t0 = System.nanoTime();
+                    if (format.equals("text")) tree.saveToFile(file);
+                    else tree.saveSnapshot(file, format.endsWith("deflate"));
+                    long saveNs = System.nanoTime() - t0;
+
+                    // startup = read the file and build a fresh tree from it
+                    usedHeap(); // collect the previous tree first so each format starts from the same heap
+                    BPlusTree loaded = new BPlusTree();
+                    t0 = System.nanoTime();
+                    if (format.equals("text")) loaded.loadFromFile(file);
+                    else loaded.loadSnapshot(file);
+                    long loadNs = System.nanoTime() - t0;
+                    if (loaded.count() != tree.count()) throw new IllegalStateException(format + " loaded " + loaded.count() + " records");
+
+                    if (pass == 2) {
+                        System.out.printf("%-15s %8.1f MB | save %7.1f ms | startup %7.1f ms%n", format,
+                                Files.size(Paths.get(file)) / 1e6, saveNs / 1e6, loadNs / 1e6);
+                    }
+                }
+            }
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    private static void benchIngest(int n) throws IOException {
+        // unsorted fixed-width file where about 5% of the lines repeat an earlier ID
+        Path dir = Files.createTempDirectory("bptree-ingest");
+        String file = dir.resolve("parts.txt").toString();
+        Random rnd = new Random(3);
+        try (java.io.BufferedWriter w = Files.newBufferedWriter(Paths.get(file))) {
+            for (int i = 0; i < n; i++) {
+                int k = rnd.nextInt(20) == 0 ? rnd.nextInt(i + 1) : i;
+                int key = (int) ((k * 2654435761L) % n); // scatter the key order
+                w.write(String.format("%-7s%8s%-65s", syntheticId(key), "", "PART " + i));
+                w.newLine();
+            }
+        }
+        System.out.printf("%d lines, %.1f MB, %d cores%n", n, Files.size(Paths.get(file)) / 1e6,
+                Runtime.getRuntime().availableProcessors());
+
+        try {
+            for (int pass = 0; pass < 2; pass++) { // second pass is measured on warmed-up code
+                usedHeap();
+                BPlusTree seq = new BPlusTree();
+                long t0 = System.nanoTime();
+                seq.loadFromFile(file);
+                long seqNs = System.nanoTime() - t0;
+                if (pass == 1) {
+                    System.out.printf("sequential  %8.0f ms  %9.0f records/s%n", seqNs / 1e6, n * 1e9 / seqNs);
+                }
+                int expected = seq.count();
+                seq = null;
+
+                for (int workers : new int[]{1, 2, 4, 8, 16}) {
+                    usedHeap();
+                    ParallelLoader loader = new ParallelLoader(workers);
+                    BPlusTree tree = new BPlusTree();
+                    t0 = System.nanoTime();
+                    List<PartRecord> records = loader.load(file);
+                    long b0 = System.nanoTime();
+                    tree.bulkLoad(records);
+                    long buildNs = System.nanoTime() - b0;
+                    long totalNs = System.nanoTime() - t0;
+                    if (tree.count() != expected) throw new IllegalStateException(workers + " workers loaded " + tree.count());
+                    if (pass == 1) {
+                        System.out.printf("%2d workers  %8.0f ms  %9.0f records/s | parse %5.0f, sort %5.0f, dedup %4.0f, build %5.0f ms%n",
+                                workers, totalNs / 1e6, n * 1e9 / totalNs, loader.parseNanos / 1e6,
+                                loader.sortNanos / 1e6, loader.dedupNanos / 1e6, buildNs / 1e6);
+                    }
+                }
+            }
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // -------------------- SHARDED --------------------
+    // the operations the sharded benchmark mixes, so every index variant runs the same workload
+    private interface MixedTarget {
+        PartRecord search(String id);
+        boolean insert(PartRecord rec);
+        boolean update(String id, String desc);
+        boolean delete(String id);
+        List<PartRecord> scanFrom(String id, int count);
+        int count();
+    }
+
+    private static MixedTarget target(ShardedPartIndex index) {
+        return new MixedTarget() {
+            public PartRecord search(String id) { return index.search(id); }
+            public boolean insert(PartRecord rec) { return index.insert(rec); }
+            public boolean update(String id, String desc) { return index.update(id, desc); }
+            public boolean delete(String id) { return index.delete(id); }
+            public List<PartRecord> scanFrom(String id, int count) { return index.scanFrom(id, count); }
+            public int count() { return index.count(); }
+        };
+    }
+
+    private static MixedTarget target(ConcurrentBPlusTree tree) {
+        return new MixedTarget() {
+            public PartRecord search(String id) { return tree.search(id); }
+            public boolean insert(PartRecord rec) { return tree.insert(rec); }
+            public boolean update(String id, String desc) { return tree.update(id, desc); }
+            public boolean delete(String id) { return tree.delete(id); }
+            public List<PartRecord> scanFrom(String id, int count) { return tree.scanFrom(id, count); }
+            public int count() { return tree.countAllRecords(); }
+        };
+    }
+
+    private static void benchSharded(int maxThreads) {
+        // preload the even IDs; workers insert and delete odd IDs spread over the whole key range,
+        // each worker owning the odd IDs congruent to its number so the expected set is exact
+        int preload = 500_000;
+        int opsPerThread = 100_000;
+        int shardCount = 16;
+        List<PartRecord> base = new ArrayList<>(preload);
+        for (int i = 0; i < preload; i++) base.add(new PartRecord(syntheticId(2 * i), "PART " + i));
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int t = 1; t < maxThreads; t *= 2) threadCounts.add(t);
+        threadCounts.add(maxThreads);
+        System.out.printf("%d records preloaded, 70%% search / 15%% insert / 5%% delete / 5%% update / 5%% scan, %d cores%n",
+                preload, Runtime.getRuntime().availableProcessors());
+
+        for (int threads : threadCounts) {
+            StringBuilder line = new StringBuilder(String.format("%2d threads:", threads));
+            for (String variant : new String[]{"one lock", shardCount + " shards", "crabbing"}) {
+                MixedTarget index;
+                Runnable check;
+                if (variant.equals("crabbing")) {
+                    BPlusTree tree = new BPlusTree();
+                    tree.bulkLoad(base);
+                    ConcurrentBPlusTree concurrent = new ConcurrentBPlusTree(tree);
+                    index = target(concurrent);
+                    check = concurrent::checkInvariants;
+                } else {
+                    ShardedPartIndex sharded = ShardedPartIndex.fromSorted(base, variant.equals("one lock") ? 1 : shardCount, BPlusTree.DEFAULT_ORDER);
+                    index = target(sharded);
+                    check = sharded::checkInvariants;
+                }
+                ConcurrentHashMap<String, Boolean> present = new ConcurrentHashMap<>();
+                int ownKeys = preload / threads;
+
+                Thread[] workers = new Thread[threads];
+                Throwable[] failure = new Throwable[1];
+                long t0 = System.nanoTime();
+                for (int t = 0; t < threads; t++) {
+                    int worker = t;
+                    workers[t] = new Thread(() -> {
+                        Random rnd = new Random(worker);
+                        try {
+                            for (int i = 0; i < opsPerThread; i++) {
+                                int op = rnd.nextInt(100);
+                                if (op < 70) {
+                                    index.search(syntheticId(2 * rnd.nextInt(preload)));
+                                } else if (op < 85) {
+                                    String id = syntheticId(2 * (rnd.nextInt(ownKeys) * threads + worker) + 1);
+                                    if (index.insert(new PartRecord(id, "NEW"))) present.put(id, true);
+                                } else if (op < 90) {
+                                    String id = syntheticId(2 * (rnd.nextInt(ownKeys) * threads + worker) + 1);
+                                    if (index.delete(id)) present.remove(id);
+                                } else if (op < 95) {
+                                    index.update(syntheticId(2 * rnd.nextInt(preload)), "UPDATED " + i);
+                                } else {
+                                    List<PartRecord> page = index.scanFrom(syntheticId(2 * rnd.nextInt(preload)), 50);
+                                    for (int k = 1; k < page.size(); k++) {
+                                        if (page.get(k - 1).id.compareTo(page.get(k).id) >= 0) throw new IllegalStateException("scan out of order");
+                                    }
+                                }
+                            }
+                        } catch (Throwable e) {
+                            failure[0] = e;
+                        }
+                    });
+                    workers[t].start();
+                }
+                joinAll(workers);
+                long ns = System.nanoTime() - t0;
+                if (failure[0] != null) throw new IllegalStateException(variant + " worker failed", failure[0]);
+
+                check.run();
+                int count = index.count();
+                if (count != preload + present.size()) {
+                    throw new IllegalStateException(variant + ": expected " + (preload + present.size()) + " records, found " + count);
+                }
+                for (String id : present.keySet()) {
+                    if (index.search(id) == null) throw new IllegalStateException(variant + ": missing " + id);
+                }
+                line.append(String.format(" | %s %,11.0f ops/s", variant, (long) threads * opsPerThread * 1e9 / ns));
+            }
+            System.out.println(line);
+        }
+    }
+
+    // -------------------- COPY-ON-WRITE --------------------
+    private static void benchCow(int n) throws IOException {
+        int writes = 500_000;
+        List<PartRecord> base = evenRecords(n);
+
+        // write cost: no snapshot, one snapshot held throughout, a fresh snapshot every k writes
+        System.out.printf("%d records, %d writes (50%% update, 30%% insert, 20%% delete)%n", n, writes);
+        for (int pass = 0; pass < 2; pass++) { // second pass is measured on warmed-up code
+            for (int every : new int[]{0, -1, 100_000, 10_000, 1_000, 100}) {
+                BPlusTree tree = new BPlusTree();
+                tree.bulkLoad(base);
+                Random rnd = new Random(5);
+                Snapshot snap = every == 0 ? null : tree.snapshot();
+                long t0 = System.nanoTime();
+                for (int i = 0; i < writes; i++) {
+                    if (every > 0 && i > 0 && i % every == 0) {
+                        snap.close();
+                        snap = tree.snapshot();
+                    }
+                    mixedWrite(tree, rnd, n, i);
+                }
+                long ns = System.nanoTime() - t0;
+                if (snap != null) snap.close();
+                if (pass == 1) {
+                    String label = every == 0 ? "no snapshot" : every < 0 ? "one snapshot" : "new every " + every;
+                    System.out.printf("%-16s %10.0f writes/s | %9d nodes copied (%.2f per write)%n",
+                            label, writes * 1e9 / ns, tree.copiedNodes, tree.copiedNodes / (double) writes);
+                }
+            }
+        }
+
+        // heap kept alive by one open snapshot after k random writes. Each tree gets its own
+        // records so the old versions of updated records count too
+        System.out.println("heap kept alive by one snapshot:");
+        base = null;
+        for (int k : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            for (int pass = 0; pass < 2; pass++) { // the first heap reading after a big build is unreliable
+                BPlusTree tree = new BPlusTree();
+                tree.bulkLoad(evenRecords(n));
+                Random rnd = new Random(6);
+                Snapshot snap = tree.snapshot();
+                for (int i = 0; i < k; i++) mixedWrite(tree, rnd, n, i);
+                long held = usedHeap();
+                snap.close();
+                snap = null;
+                long released = usedHeap();
+                if (pass == 1) {
+                    System.out.printf("  after %,9d writes: %,9d KB (%d nodes copied)%n",
+                            k, (held - released) / 1024, tree.copiedNodes);
+                }
+                if (tree.count() < 0) System.out.println(); // keeps the tree reachable until here
+            }
+        }
+
+        // a binary save of a snapshot on another thread while this thread keeps writing
+        Path dir = Files.createTempDirectory("bptree-cow");
+        try {
+            String file = dir.resolve("parts.bpts").toString();
+            BPlusTree tree = new BPlusTree();
+            tree.bulkLoad(evenRecords(n));
+            Snapshot snap = tree.snapshot();
+            long[] saveNs = new long[1];
+            Throwable[] failure = new Throwable[1];
+            Thread saver = new Thread(() -> {
+                try {
+                    long t0 = System.nanoTime();
+                    snap.saveSnapshot(file, false);
+                    saveNs[0] = System.nanoTime() - t0;
+                } catch (Throwable e) {
+                    failure[0] = e;
+                }
+            });
+            Random rnd = new Random(7);
+            saver.start();
+            int done = 0;
+            while (saver.isAlive()) mixedWrite(tree, rnd, n, done++);
+            joinAll(new Thread[]{saver});
+            if (failure[0] != null) throw new IllegalStateException("save failed", failure[0]);
+            snap.close();
+            long saved = BinarySnapshot.recordCount(file);
+            if (saved != snap.count()) throw new IllegalStateException("saved " + saved + " records, snapshot has " + snap.count());
+            tree.checkInvariants();
+            System.out.printf("save during writes: %d records in %.0f ms while %d writes went to the live tree (%d records now)%n",
+                    saved, saveNs[0] / 1e6, done, tree.count());
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    // -------------------- METRICS --------------------
+    private static void benchMetrics(int n) {
+        int ops = 2_000_000;
+        System.out.printf("%d records, %d ops per round, metrics %s for this JVM%n", n, ops,
+                TreeMetrics.ENABLED ? "available" : "switched off (-Dbptree.metrics=off)");
+        for (int round = 0; round < 6; round++) {
+            for (boolean on : new boolean[]{round % 2 == 0, round % 2 != 0}) {
+                BPlusTree tree = new BPlusTree();
+                tree.bulkLoad(evenRecords(n));
+                if (on) tree.enableMetrics();
+                Random rnd = new Random(8);
+                long sink = 0;
+                long t0 = System.nanoTime();
+                for (int i = 0; i < ops; i++) {
+                    // mostly lookups, as in production
+                    if ((i & 7) != 0) {
+                        if (tree.search(syntheticId(2 * rnd.nextInt(n))) != null) sink++;
+                    } else {
+                        mixedWrite(tree, rnd, n, i);
+                    }
+                }
+                long ns = System.nanoTime() - t0;
+                if (round >= 2) {
+                    System.out.printf("metrics %-3s %8.1f ns/op (%d hits)%n", on && tree.getMetrics() != null ? "on" : "off", ns / (double) ops, sink);
+                    if (tree.getMetrics() != null && round == 5) {
+                        tree.getMetrics().refresh();
+                        System.out.print(tree.getMetrics().getText());
+                        System.out.println(tree.getMetrics().getJson());
+                    }
+                }
+            }
+        }
+    }
+
+    // -------------------- SERVER --------------------
+    private static void benchServer(int maxConnections) throws IOException {
+        int n = 1_000_000;
+        BPlusTree tree = new BPlusTree();
+        tree.bulkLoad(evenRecords(n));
+        tree.enableMetrics();
+        PartServer server = new PartServer(tree, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = server.start();
+        SocketAddress address = server.getLocalAddress();
+        System.out.printf("%d records, server on %s; 80%% GET, 8%% PUT, 5%% UPDATE, 4%% DEL, 3%% RANGE of 10%n", n, address);
+        for (int depth : new int[]{1, 32}) {
+            // one request in flight per connection is bound by round trips, so it gets fewer requests
+            int total = depth == 1 ? 50_000 : 400_000;
+            for (int conns = 1; conns <= maxConnections; conns *= 2) {
+                int perConn = total / conns;
+                long[][] latencies = new long[conns][perConn];
+                AtomicLong errors = new AtomicLong();
+                IOException[] failure = new IOException[1];
+                Thread[] clients = new Thread[conns];
+                long t0 = System.nanoTime();
+                for (int t = 0; t < conns; t++) {
+                    int worker = t;
+                    clients[t] = new Thread(() -> {
+                        try {
+                            runClient(address, n, depth, new Random(worker), latencies[worker], errors);
+                        } catch (IOException e) {
+                            failure[0] = e;
+                        }
+                    });
+                    clients[t].start();
+                }
+                joinAll(clients);
+                long ns = System.nanoTime() - t0;
+                if (failure[0] != null) throw failure[0];
+                long[] all = flatten(latencies);
+                System.out.printf("depth %2d, %3d connections: %,9.0f req/s | latency p50 %7.1f us, p99 %8.1f us, p999 %8.1f us | %d bad responses%n",
+                        depth, conns, all.length * 1e9 / ns, percentile(all, 50) / 1e3, percentile(all, 99) / 1e3,
+                        percentile(all, 99.9) / 1e3, errors.get());
+            }
+        }
+        server.close();
+        try {
+            serverThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tree.checkInvariants();
+        System.out.printf("server answered %d requests; tree holds %d records%n", server.requests(), tree.count());
+        tree.getMetrics().refresh();
+        System.out.print(tree.getMetrics().getText());
+    }
+
+    // sends latencies.length requests in batches of depth and waits for each batch's responses;
+    // a request's latency runs from sending its batch to reading its response
+    private static void runClient(SocketAddress address, int n, int depth, Random rnd, long[] latencies, AtomicLong errors) throws IOException {
+        try (SocketChannel ch = SocketChannel.open(address)) {
+            ch.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            LineReader in = new LineReader(ch);
+            StringBuilder batch = new StringBuilder();
+            char[] kinds = new char[depth];
+            for (int done = 0; done < latencies.length; done += depth) {
+                int k = Math.min(depth, latencies.length - done);
+                batch.setLength(0);
+                for (int j = 0; j < k; j++) {
+                    int op = rnd.nextInt(100);
+                    kinds[j] = op < 80 ? 'G' : op < 88 ? 'P' : op < 93 ? 'U' : op < 97 ? 'D' : 'R';
+                    // even IDs are never deleted, so GET and UPDATE of them must succeed
+                    switch (kinds[j]) {
+                        case 'G': batch.append("GET ").append(syntheticId(2 * rnd.nextInt(n))); break;
+                        case 'P': batch.append("PUT ").append(syntheticId(2 * rnd.nextInt(n) + 1)).append(" NEW PART"); break;
+                        case 'U': batch.append("UPDATE ").append(syntheticId(2 * rnd.nextInt(n))).append(" UPDATED"); break;
+                        case 'D': batch.append("DEL ").append(syntheticId(2 * rnd.nextInt(n) + 1)); break;
+                        default: batch.append("RANGE ").append(syntheticId(2 * rnd.nextInt(n))).append(" 10");
+                    }
+                    batch.append('\n');
+                }
+                ByteBuffer out = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+                long sent = System.nanoTime();
+                while (out.hasRemaining()) ch.write(out);
+                for (int j = 0; j < k; j++) {
+                    String status = in.readLine();
+                    if (kinds[j] == 'R' && status.startsWith("OK ")) {
+                        for (int rows = Integer.parseInt(status.substring(3)); rows > 0; rows--) in.readLine();
+                    } else if (status.startsWith("ERR") || ((kinds[j] == 'G' || kinds[j] == 'U') && !status.startsWith("OK"))) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[done + j] = System.nanoTime() - sent;
+                }
+            }
+        }
+    }
+
+    // newline-delimited reader over a blocking channel
+    private static final class LineReader {
+        private final SocketChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(64 * 1024); // unread bytes in [position, limit)
+
+        LineReader(SocketChannel channel) {
+            this.channel = channel;
+            buf.flip();
+        }
+
+        String readLine() throws IOException {
+            while (true) {
+                byte[] a = buf.array();
+                for (int i = buf.position(); i < buf.limit(); i++) {
+                    if (a[i] != '\n') continue;
+                    String line = new String(a, buf.position(), i - buf.position(), StandardCharsets.UTF_8);
+                    buf.position(i + 1);
+                    return line;
+                }
+                buf.compact();
+                if (!buf.hasRemaining()) throw new IOException("response line too long");
+                int read = channel.read(buf);
+                buf.flip();
+                if (read < 0) throw new EOFException("server closed the connection");
+            }
+        }
+    }
+
+    // -------------------- LOOKUP LAYERS --------------------
+    private static void benchLookup(int n) {
+        int ops = 1_000_000, cacheSize = Math.max(1, n / 100);
+        // shares of Zipfian hits, uniform hits and misses
+        String[] names = {"skewed", "miss-heavy", "hot+cold"};
+        int[][] mixes = {{90, 5, 5}, {20, 0, 80}, {50, 50, 0}};
+        String[] configs = {"tree only", "bloom 1%", "LRU cache", "W-TinyLFU cache", "bloom + W-TinyLFU"};
+        System.out.printf("%d records, %d searches per run (1 in 50 ops is a write), cache of %d records%n", n, ops, cacheSize);
+        for (int w = 0; w < names.length; w++) {
+            String[] ids = lookupStream(n, ops, mixes[w], w);
+            System.out.printf("%s: %d%% Zipfian hits, %d%% uniform hits, %d%% misses%n", names[w], mixes[w][0], mixes[w][1], mixes[w][2]);
+            for (String config : configs) {
+                BPlusTree tree = new BPlusTree();
+                tree.bulkLoad(evenRecords(n));
+                if (config.startsWith("bloom")) tree.enableBloomFilter(0.01);
+                if (config.contains("LRU")) tree.enableHotCache(cacheSize, HotRecordCache.Policy.LRU);
+                if (config.contains("TinyLFU")) tree.enableHotCache(cacheSize, HotRecordCache.Policy.W_TINYLFU);
+                LatencyHistogram latency = new LatencyHistogram();
+                long hits = 0;
+                // the first pass warms up the JIT and the cache
+                for (int pass = 0; pass < 2; pass++) {
+                    latency.reset();
+                    if (tree.getHotCache() != null) tree.getHotCache().resetStats();
+                    tree.bloomNegatives = tree.bloomFalsePositives = 0;
+                    Random rnd = new Random(w);
+                    hits = 0;
+                    for (int i = 0; i < ops; i++) {
+                        if (i % 50 == 49) mixedWrite(tree, rnd, n, i);
+                        long start = System.nanoTime();
+                        if (tree.search(ids[i]) != null) hits++;
+                        latency.record(System.nanoTime() - start);
+                    }
+                }
+                HotRecordCache cache = tree.getHotCache();
+                BloomFilter bloom = tree.getBloomFilter();
+                long passed = tree.bloomNegatives + tree.bloomFalsePositives;
+                System.out.printf("  %-18s mean %6.0f ns, p50 %6d ns, p99 %7d ns | %d found | cache hits %s | bloom answered %s, false positives %s%s%n",
+                        config, latency.mean(), latency.percentile(50), latency.percentile(99), hits,
+                        cache == null ? "-" : String.format("%.1f%%", cache.hitRate() * 100),
+                        bloom == null ? "-" : String.format("%.1f%%", tree.bloomNegatives * 100.0 / ops),
+                        bloom == null ? "-" : String.format("%.2f%% of misses", passed == 0 ? 0 : tree.bloomFalsePositives * 100.0 / passed),
+                        bloom == null ? "" : String.format(" (%d KB, %d rebuilds)", bloom.sizeInBytes() / 1024, tree.bloomRebuilds));
+            }
+        }
+    }
+
+    // search IDs for benchLookup: Zipfian ranks scattered over the even (present) IDs, uniform
+    // even IDs and odd IDs that are mostly absent
+    private static String[] lookupStream(int n, int ops, int[] mix, long seed) {
+        ZipfianGenerator zipf = new ZipfianGenerator(n, seed);
+        Random rnd = new Random(seed);
+        String[] ids = new String[ops];
+        for (int i = 0; i < ops; i++) {
+            int pick = rnd.nextInt(100);
+            if (pick < mix[0]) ids[i] = syntheticId(2 * (int) (zipf.next() * 2654435761L % n));
+            else if (pick < mix[0] + mix[1]) ids[i] = syntheticId(2 * rnd.nextInt(n));
+            else ids[i] = syntheticId(2 * rnd.nextInt(n) + 1);
+        }
+        return ids;
+    }
+
+    // n records with the even IDs below 2n, leaving the odd ones free for inserts
+    private static List<PartRecord> evenRecords(int n) {
+        List<PartRecord> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new PartRecord(syntheticId(2 * i), "PART " + i));
+        return out;
+    }
+
+    // one write against a tree holding evenRecords(n)
+    private static void mixedWrite(BPlusTree tree, Random rnd, int n, int i) {
+        int op = rnd.nextInt(10);
+        if (op < 5) tree.update(syntheticId(2 * rnd.nextInt(n)), "UPDATED " + i);
+        else if (op < 8) tree.insert(new PartRecord(syntheticId(2 * rnd.nextInt(n) + 1), "NEW " + i));
+        else tree.delete(syntheticId(2 * rnd.nextInt(n) + 1));
+    }
+
+    // -------------------- OFF-HEAP --------------------
+    // the same records in a BPlusTree and in an OffHeapBPlusTree: heap left after a full GC, how
+    // long a full GC takes with the tree live, and GC activity during lookups and scans
+    private static void benchOffHeap(int n) {
+        int lookups = 2_000_000, scans = 20_000;
+        System.out.printf("%d records, %d lookups (half misses), %d scans of 100, 2 full scans%n", n, lookups, scans);
+
+        for (int pass = 0; pass < 2; pass++) { // the first pass warms up the JIT
+            for (boolean offHeap : new boolean[]{false, true}) {
+                long before = usedHeap();
+                long t0 = System.nanoTime();
+                BPlusTree heapTree = offHeap ? null : new BPlusTree();
+                OffHeapBPlusTree offTree = offHeap ? new OffHeapBPlusTree() : null;
+                if (offHeap) offTree.bulkLoad(evenRecords(n));
+                else heapTree.bulkLoad(evenRecords(n));
+                long buildNs = System.nanoTime() - t0;
+                long heapBytes = usedHeap() - before;
+
+                // full GC pause with the tree live
+                long gcNs = Long.MAX_VALUE;
+                for (int i = 0; i < 3; i++) {
+                    long g0 = System.nanoTime();
+                    System.gc();
+                    gcNs = Math.min(gcNs, System.nanoTime() - g0);
+                }
+
+                // probes are made after the pause was timed so they don't add to it; half are misses
+                Random rnd = new Random(21);
+                String[] probes = new String[lookups];
+                for (int i = 0; i < lookups; i++) probes[i] = syntheticId(rnd.nextInt(2 * n));
+                long[] gc0 = gcTotals();
+                int found = 0;
+                t0 = System.nanoTime();
+                for (String id : probes) {
+                    PartRecord r = offHeap ? offTree.search(id) : heapTree.search(id);
+                    if (r != null) found++;
+                }
+                long lookupNs = System.nanoTime() - t0;
+
+                long chars = 0;
+                t0 = System.nanoTime();
+                for (int i = 0; i < scans; i++) {
+                    String start = syntheticId(rnd.nextInt(2 * n));
+                    for (PartRecord r : offHeap ? offTree.scanFrom(start, 100) : heapTree.scanFrom(start, 100)) chars += r.description.length();
+                }
+                long scanFromNs = System.nanoTime() - t0;
+
+                t0 = System.nanoTime();
+                for (int i = 0; i < 2; i++) {
+                    Stream<PartRecord> all = offHeap ? offTree.range(null, null) : heapTree.range(null, null);
+                    chars += all.mapToLong(r -> r.description.length()).sum();
+                }
+                long fullScanNs = (System.nanoTime() - t0) / 2;
+                long[] gc1 = gcTotals();
+
+                if (pass == 1) {
+                    System.out.printf("%-9s build %5.0f ms | heap %6.1f MB (%5.1f B/record)%s | full GC %4.0f ms%n",
+                            offHeap ? "off-heap" : "on-heap", buildNs / 1e6, heapBytes / 1e6, heapBytes / (double) n,
+                            offHeap ? String.format(" + %.1f MB off-heap", offTree.arena().reservedBytes() / 1e6) : "", gcNs / 1e6);
+                    System.out.printf("          lookup %5.0f ns/op (%d found) | scanFrom(100) %6.1f us | full scan %5.0f ms | %d GCs, %d ms during the workload%s%n",
+                            lookupNs / (double) lookups, found, scanFromNs / 1e3 / scans, fullScanNs / 1e6,
+                            gc1[0] - gc0[0], gc1[1] - gc0[1], chars < 0 ? "!" : "");
+                }
+                if (offHeap) {
+                    offTree.checkInvariants();
+                    offTree.close();
+                }
+            }
+        }
+    }
+
+    // collections and milliseconds spent collecting, summed over all collectors
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    // -------------------- DATA --------------------
+    // n distinct records with IDs in the AAA-000 shape, in key order
+    static List<PartRecord> syntheticRecords(int n) {
+        List<PartRecord> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new PartRecord(syntheticId(i), "PART " + i));
+        return out;
+    }
+
+    // i-th ID in key order (AAA-000, AAA-001, ...)
+    static String syntheticId(int i) {
+        return PartFileGenerator.id(i);
+    }
+}
@@ -0,0 +1,412 @@
+package bptree;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Versioned binary snapshot of the records in key order.
+//
+//   header  magic "BPTS" | int version | int flags
+//   block*  int records | int rawLen | int storedLen | int crc32(stored) | byte codec | stored bytes
+//   footer  int blocks | (long offset | int records | short keyLen | first key)* |
+//           long footerOffset | long records | int crc32(footer) | magic "BPTE"
+//
+// A block's raw bytes are its records, each a varint-length UTF-8 ID followed by a varint
+// (length + 1, 0 for null) UTF-8 description. Blocks are cut at about BLOCK_BYTES raw bytes and
+// stored either as-is or deflated. The footer's first keys let a reader go straight to the one
+// block that can hold an ID.
+public class BinarySnapshot {
+    static final int MAGIC = 0x42505453;     // "BPTS"
+    static final int END_MAGIC = 0x42505445; // "BPTE"
+    static final int VERSION = 1;
+    static final int FLAG_COMPRESSED = 1;
+
+    private static final int HEADER_BYTES = 12;
+    private static final int BLOCK_HEADER_BYTES = 17;
+    private static final int TAIL_BYTES = 24;
+    private static final int BLOCK_BYTES = 64 * 1024;
+
+    private static final byte CODEC_RAW = 0;
+    private static final byte CODEC_DEFLATE = 1;
+
+    // one footer entry
+    public static class BlockInfo {
+        public final long offset;
+        public final int records;
+        public final String firstKey;
+
+        BlockInfo(long offset, int records, String firstKey) {
+            this.offset = offset;
+            this.records = records;
+            this.firstKey = firstKey;
+        }
+    }
+
+    // true if the file starts with the snapshot magic
+    public static boolean isSnapshot(String filename) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(Paths.get(filename)))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // -------------------- WRITE --------------------
+    // writes the records (which must come in ascending ID order) to a synced temp file, then renames it over filename
+    public static PartFileReader.LoadStats write(Iterator<PartRecord> records, String filename, boolean compress) throws IOException {
+        long start = System.nanoTime();
+        Path target = Paths.get(filename);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        BlockWriter w;
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(compress ? FLAG_COMPRESSED : 0);
+            w = new BlockWriter(out, compress);
+            try {
+                while (records.hasNext()) w.add(records.next());
+                w.finish();
+            } finally {
+                w.close();
+            }
+            out.flush();
+            // the old file is only replaced once the new one is fully on disk
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new PartFileReader.LoadStats(w.offset, w.total, System.nanoTime() - start);
+    }
+
+    // cuts the record stream into blocks and writes them, then the footer
+    private static final class BlockWriter {
+        private final DataOutputStream out;
+        private final Deflater deflater;
+        private final Buffer raw = new Buffer(BLOCK_BYTES + 1024);
+        private byte[] packed = new byte[BLOCK_BYTES + 1024];
+        private final CRC32 crc = new CRC32();
+        private final List<BlockInfo> index = new ArrayList<>();
+        private String firstKey;
+        private int blockRecords;
+        long offset = HEADER_BYTES;
+        long total;
+
+        BlockWriter(DataOutputStream out, boolean compress) {
+            this.out = out;
+            this.deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+        }
+
+        void add(PartRecord r) throws IOException {
+            if (blockRecords == 0) firstKey = r.id;
+            raw.putString(r.id, false);
+            raw.putString(r.description, true);
+            blockRecords++;
+            total++;
+            if (raw.len >= BLOCK_BYTES) flush();
+        }
+
+        private void flush() throws IOException {
+            byte[] stored = raw.bytes;
+            int storedLen = raw.len;
+            byte codec = CODEC_RAW;
+            if (deflater != null) {
+                deflater.reset();
+                deflater.setInput(raw.bytes, 0, raw.len);
+                deflater.finish();
+                if (packed.length < raw.len + 1024) packed = new byte[raw.len + 1024];
+                int n = 0;
+                while (!deflater.finished() && n < packed.length) n += deflater.deflate(packed, n, packed.length - n);
+                // keep the raw bytes when deflate doesn't pay off
+                if (deflater.finished() && n < raw.len) {
+                    stored = packed;
+                    storedLen = n;
+                    codec = CODEC_DEFLATE;
+                }
+            }
+            crc.reset();
+            crc.update(stored, 0, storedLen);
+            index.add(new BlockInfo(offset, blockRecords, firstKey));
+            out.writeInt(blockRecords);
+            out.writeInt(raw.len);
+            out.writeInt(storedLen);
+            out.writeInt((int) crc.getValue());
+            out.writeByte(codec);
+            out.write(stored, 0, storedLen);
+            offset += BLOCK_HEADER_BYTES + storedLen;
+            raw.len = 0;
+            blockRecords = 0;
+        }
+
+        void finish() throws IOException {
+            if (blockRecords > 0) flush();
+            Buffer footer = new Buffer(64 + index.size() * 32);
+            footer.putInt(index.size());
+            for (BlockInfo b : index) {
+                footer.putLong(b.offset);
+                footer.putInt(b.records);
+                byte[] key = b.firstKey.getBytes(StandardCharsets.UTF_8);
+                footer.putShort(key.length);
+                footer.put(key, 0, key.length);
+            }
+            crc.reset();
+            crc.update(footer.bytes, 0, footer.len);
+            out.write(footer.bytes, 0, footer.len);
+            out.writeLong(offset);
+            out.writeLong(total);
+            out.writeInt((int) crc.getValue());
+            out.writeInt(END_MAGIC);
+            offset += footer.len + TAIL_BYTES;
+        }
+
+        void close() {
+            if (deflater != null) deflater.end();
+        }
+    }
+
+    // -------------------- READ --------------------
+    // reads every record in key order and hands it to sink; throws IOException on a bad checksum
+    public static PartFileReader.LoadStats read(String filename, Consumer<PartRecord> sink) throws IOException {
+        long start = System.nanoTime();
+        Path path = Paths.get(filename);
+        long size = Files.size(path);
+        Footer footer = readFooter(path);
+
+        long records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            readHeader(in);
+            BlockReader blocks = new BlockReader();
+            try {
+                for (int i = 0; i < footer.blocks.size(); i++) records += blocks.read(in, sink);
+            } finally {
+                blocks.close();
+            }
+        }
+        if (records != footer.records) throw new IOException("snapshot holds " + records + " records, footer says " + footer.records);
+        return new PartFileReader.LoadStats(size, records, System.nanoTime() - start);
+    }
+
+    // total record count from the footer, without reading any block
+    public static long recordCount(String filename) throws IOException {
+        return readFooter(Paths.get(filename)).records;
+    }
+
+    // looks up one ID by reading only the block the footer index points to
+    public static PartRecord find(String filename, String id) throws IOException {
+        Path path = Paths.get(filename);
+        Footer footer = readFooter(path);
+        int lo = 0, hi = footer.blocks.size();
+        while (lo < hi) { // last block whose first key <= id
+            int mid = (lo + hi) >>> 1;
+            if (footer.blocks.get(mid).firstKey.compareTo(id) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        if (lo == 0) return null;
+
+        PartRecord[] found = new PartRecord[1];
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ch.position(footer.blocks.get(lo - 1).offset);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 1 << 16));
+            BlockReader blocks = new BlockReader();
+            try {
+                blocks.read(in, r -> {
+                    if (r.id.equals(id)) found[0] = r;
+                });
+            } finally {
+                blocks.close();
+            }
+        }
+        return found[0];
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("not a snapshot file");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("unsupported snapshot version " + version);
+        in.readInt(); // flags: each block records its own codec
+    }
+
+    private static final class Footer {
+        final List<BlockInfo> blocks;
+        final long records;
+
+        Footer(List<BlockInfo> blocks, long records) {
+            this.blocks = blocks;
+            this.records = records;
+        }
+    }
+
+    private static Footer readFooter(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES + TAIL_BYTES) throw new IOException("snapshot too short");
+            ByteBuffer tail = readFully(ch, size - TAIL_BYTES, TAIL_BYTES);
+            long footerOffset = tail.getLong();
+            long records = tail.getLong();
+            int crc = tail.getInt();
+            if (tail.getInt() != END_MAGIC) throw new IOException("snapshot footer missing (truncated file?)");
+            if (footerOffset < HEADER_BYTES || footerOffset > size - TAIL_BYTES) throw new IOException("bad footer offset " + footerOffset);
+
+            ByteBuffer footer = readFully(ch, footerOffset, (int) (size - TAIL_BYTES - footerOffset));
+            CRC32 check = new CRC32();
+            check.update(footer.duplicate());
+            if ((int) check.getValue() != crc) throw new IOException("snapshot footer checksum mismatch");
+            int count = footer.getInt();
+            List<BlockInfo> blocks = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long offset = footer.getLong();
+                int n = footer.getInt();
+                byte[] key = new byte[footer.getShort() & 0xFFFF];
+                footer.get(key);
+                blocks.add(new BlockInfo(offset, n, new String(key, StandardCharsets.UTF_8)));
+            }
+            return new Footer(blocks, records);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, pos + buf.position()) < 0) throw new EOFException();
+        }
+        buf.flip();
+        return buf;
+    }
+
+    // reads blocks one at a time, reusing its buffers
+    private static final class BlockReader {
+        private byte[] stored = new byte[BLOCK_BYTES + 1024];
+        private byte[] raw = new byte[BLOCK_BYTES + 1024];
+        private final CRC32 crc = new CRC32();
+        private final Inflater inflater = new Inflater();
+
+        // returns the number of records in the block
+        int read(DataInputStream in, Consumer<PartRecord> sink) throws IOException {
+            int records = in.readInt();
+            int rawLen = in.readInt();
+            int storedLen = in.readInt();
+            int expected = in.readInt();
+            byte codec = in.readByte();
+            if (stored.length < storedLen) stored = new byte[storedLen];
+            in.readFully(stored, 0, storedLen);
+            crc.reset();
+            crc.update(stored, 0, storedLen);
+            if ((int) crc.getValue() != expected) throw new IOException("snapshot block checksum mismatch");
+
+            byte[] data = stored;
+            if (codec == CODEC_DEFLATE) {
+                if (raw.length < rawLen) raw = new byte[rawLen];
+                inflater.reset();
+                inflater.setInput(stored, 0, storedLen);
+                try {
+                    if (inflater.inflate(raw, 0, rawLen) != rawLen) throw new IOException("short snapshot block");
+                } catch (DataFormatException e) {
+                    throw new IOException("corrupt snapshot block", e);
+                }
+                data = raw;
+            } else if (codec != CODEC_RAW) {
+                throw new IOException("unknown snapshot codec " + codec);
+            }
+
+            int[] pos = {0};
+            for (int i = 0; i < records; i++) {
+                String id = getString(data, pos, false);
+                String desc = getString(data, pos, true);
+                sink.accept(new PartRecord(id, desc));
+            }
+            if (pos[0] != rawLen) throw new IOException("snapshot block has trailing bytes");
+            return records;
+        }
+
+        void close() {
+            inflater.end();
+        }
+
+        // varint length (+1 for nullable strings; 0 = null) then UTF-8 bytes
+        private static String getString(byte[] data, int[] pos, boolean nullable) {
+            int p = pos[0];
+            int len = 0, shift = 0;
+            byte b;
+            do {
+                b = data[p++];
+                len |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (nullable) {
+                if (len == 0) {
+                    pos[0] = p;
+                    return null;
+                }
+                len--;
+            }
+            pos[0] = p + len;
+            return new String(data, p, len, StandardCharsets.UTF_8);
+        }
+    }
+
+    // growable byte array used for blocks and the footer
+    private static final class Buffer {
+        byte[] bytes;
+        int len;
+
+        Buffer(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (len + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, len + extra));
+        }
+
+        void putString(String s, boolean nullable) {
+            if (s == null) {
+                putVarint(0);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            putVarint(nullable ? b.length + 1 : b.length);
+            put(b, 0, b.length);
+        }
+
+        void putVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                bytes[len++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            bytes[len++] = (byte) v;
+        }
+
+        void put(byte[] b, int off, int n) {
+            ensure(n);
+            System.arraycopy(b, off, bytes, len, n);
+            len += n;
+        }
+
+        void putShort(int v) {
+            ensure(2);
+            bytes[len++] = (byte) (v >>> 8);
+            bytes[len++] = (byte) v;
+        }
+
+        void putInt(int v) {
+            ensure(4);
+            for (int s = 24; s >= 0; s -= 8) bytes[len++] = (byte) (v >>> s);
+        }
+
+        void putLong(long v) {
+            ensure(8);
+            for (int s = 56; s >= 0; s -= 8) bytes[len++] = (byte) (v >>> s);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package bptree;
+
+// Bloom filter over part IDs for negative lookups: mightContain(id) == false means the ID was
+// never added. It is blocked (Putze, Sanders and Singler): all k bits of an ID fall into one
+// 512-bit block, a single cache line, so a lookup costs one cache miss instead of k. Blocks fill
+// unevenly, which costs some accuracy, so the constructor sizes the filter with the blocked
+// false-positive formula until the configured rate holds for the expected number of IDs.
+// IDs can't be taken out again; BPlusTree rebuilds the filter once enough deletes went stale.
+// Not thread-safe.
+public class BloomFilter {
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / 64;
+
+    private final long[] bits;
+    private final long range;    // twice the block count, see block()
+    private final int hashes;
+    private final int expected;
+    private final double fpp;
+    private int added;
+
+    public BloomFilter(int expectedIds, double fpp) {
+        if (!(fpp > 0 && fpp < 1)) throw new IllegalArgumentException("false-positive rate must be in (0, 1)");
+        this.expected = Math.max(1, expectedIds);
+        this.fpp = fpp;
+        double ln2 = Math.log(2);
+        this.hashes = Math.max(1, Math.min(16, (int) Math.round(-Math.log(fpp) / ln2)));
+        // start from the classic bits per ID and grow until the blocked rate meets the target
+        double bitsPerId = -Math.log(fpp) / (ln2 * ln2);
+        while (blockedRate(BLOCK_BITS / bitsPerId, hashes) > fpp) bitsPerId *= 1.02;
+        long blocks = Math.max(1, (long) Math.ceil(expected * bitsPerId / BLOCK_BITS));
+        this.bits = new long[(int) (blocks * BLOCK_WORDS)];
+        this.range = blocks * 2;
+    }
+
+    public void add(String id) {
+        long h = hash(id);
+        int base = block(h);
+        long g = Long.rotateLeft(h, 32);
+        for (int i = 0; i < hashes; i++) {
+            g = next(g);
+            int bit = (int) (g >>> 55); // top 9 bits pick one of the 512
+            bits[base + (bit >>> 6)] |= 1L << bit;
+        }
+        added++;
+    }
+
+    public boolean mightContain(String id) {
+        long h = hash(id);
+        int base = block(h);
+        long g = Long.rotateLeft(h, 32);
+        for (int i = 0; i < hashes; i++) {
+            g = next(g);
+            int bit = (int) (g >>> 55);
+            if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // first word of the block: high 64 bits of (h mod 2^63) * 2 * blocks, evenly spread over
+    // [0, blocks) without a division (Lemire's fast range)
+    private int block(long h) {
+        return (int) Math.multiplyHigh(h & Long.MAX_VALUE, range) * BLOCK_WORDS;
+    }
+
+    // one step of a 64-bit LCG; its high bits are well mixed
+    private static long next(long g) {
+        return g * 0x5851f42d4c957f2dL + 0x14057b7ef767814fL;
+    }
+
+    // FNV-1a over the chars, then the MurmurHash3 finalizer to spread the short IDs
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) h = (h ^ id.charAt(i)) * 0x100000001b3L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    // false-positive rate of a blocked filter whose blocks hold perBlock IDs on average: the
+    // IDs per block are Poisson distributed, and a block holding j IDs answers a wrong yes
+    // with the classic rate for j IDs in 512 bits
+    static double blockedRate(double perBlock, int k) {
+        double rate = 0, p = Math.exp(-perBlock); // P(j = 0)
+        int last = (int) (perBlock + 12 * Math.sqrt(perBlock) + 20);
+        for (int j = 0; j <= last; j++) {
+            rate += p * Math.pow(1 - Math.pow(1 - 1.0 / BLOCK_BITS, (double) k * j), k);
+            p *= perBlock / (j + 1);
+        }
+        return rate;
+    }
+
+    // -------------------- STATS --------------------
+    public int added() {
+        return added;
+    }
+
+    // true once more IDs went in than the filter was sized for
+    public boolean isFull() {
+        return added > expected;
+    }
+
+    public double targetFalsePositiveRate() {
+        return fpp;
+    }
+
+    // predicted rate for the IDs added so far
+    public double expectedFalsePositiveRate() {
+        return added == 0 ? 0 : blockedRate(added * (double) BLOCK_BITS / (bits.length * 64L), hashes);
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    public long sizeInBytes() {
+        return bits.length * 8L;
+    }
+}
@@ -0,0 +1,128 @@
+package bptree;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+// Bounded cache of decoded pages in front of a PageFile, with CLOCK eviction.
+// Callers pin a page while they use it and unpin it afterwards; pinned pages are never evicted.
+// Dirty pages are written back when they are evicted or on flush().
+public class BufferPool {
+
+    private final PageFile file;
+    private final int capacity;
+
+    private final HashMap<Integer, Page> pages = new HashMap<>();
+    private final Page[] frames;
+    private int hand = 0;
+
+    // counters
+    public long hits = 0;
+    public long misses = 0;
+    public long evictions = 0;
+
+    public BufferPool(PageFile file, int capacity) {
+        if (capacity < 4) throw new IllegalArgumentException("buffer pool needs at least 4 frames");
+        this.file = file;
+        this.capacity = capacity;
+        this.frames = new Page[capacity];
+    }
+
+    // returns the page pinned, reading it from disk if it isn't cached
+    public Page get(int pageId) throws IOException {
+        Page p = pages.get(pageId);
+        if (p != null) {
+            hits++;
+        } else {
+            misses++;
+            p = file.readPage(pageId);
+            admit(p);
+        }
+        p.pinCount++;
+        p.referenced = true;
+        return p;
+    }
+
+    // allocates a new empty page, pinned and dirty
+    public Page create(boolean isLeaf) throws IOException {
+        Page p = new Page(file.allocatePage(), isLeaf);
+        admit(p);
+        p.pinCount++;
+        p.referenced = true;
+        p.dirty = true;
+        return p;
+    }
+
+    public void unpin(Page p) {
+        if (p.pinCount <= 0) throw new IllegalStateException("page " + p.pageId + " is not pinned");
+        p.pinCount--;
+    }
+
+    // throws IllegalStateException unless n more pages can be pinned at once, so a caller can
+    // check before it changes a page that a later pin in the same operation won't fail
+    public void reserve(int n) {
+        int free = 0;
+        for (Page f : frames) {
+            if (f == null || f.pinCount == 0) free++;
+        }
+        if (free < n) {
+            throw new IllegalStateException("buffer pool too small: " + n + " more pages must be pinned but only " + free
+                    + " of " + capacity + " frames are free");
+        }
+    }
+
+    public void markDirty(Page p) {
+        p.dirty = true;
+    }
+
+    // writes every dirty page and the header back to the file
+    public void flush() throws IOException {
+        for (Page p : pages.values()) {
+            if (p.dirty) {
+                file.writePage(p);
+                p.dirty = false;
+            }
+        }
+        file.writeHeader();
+        file.sync();
+    }
+
+    public int size() {
+        return pages.size();
+    }
+
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    // places p in a free frame, evicting an unpinned page with the CLOCK algorithm if needed
+    private void admit(Page p) throws IOException {
+        for (int sweeps = 0; sweeps < 2 * capacity + 1; sweeps++) {
+            Page cur = frames[hand];
+            if (cur == null) {
+                frames[hand] = p;
+                pages.put(p.pageId, p);
+                hand = (hand + 1) % capacity;
+                return;
+            }
+            if (cur.pinCount == 0) {
+                if (cur.referenced) {
+                    cur.referenced = false; // second chance
+                } else {
+                    if (cur.dirty) {
+                        file.writePage(cur);
+                        cur.dirty = false;
+                    }
+                    pages.remove(cur.pageId);
+                    evictions++;
+                    frames[hand] = p;
+                    pages.put(p.pageId, p);
+                    hand = (hand + 1) % capacity;
+                    return;
+                }
+            }
+            hand = (hand + 1) % capacity;
+        }
+        throw new IllegalStateException("buffer pool full: all " + capacity + " pages are pinned");
+    }
+}
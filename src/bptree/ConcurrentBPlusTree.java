@@ -0,0 +1,356 @@
+package bptree;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Thread-safe variant of BPlusTree using latch crabbing on per-node latches. The latches live
+// in node subclasses only this class creates, so the single-threaded tree carries no locks.
+// Readers hold at most two read latches at a time (parent, then child). Writers first descend
+// optimistically with read latches and only write-latch the leaf; if the leaf might split they
+// restart and descend with write latches, releasing every ancestor as soon as a node on the
+// path is safe (cannot split), so a split only keeps the affected part of the path locked.
+// Leaf-chain scans latch left to right, the same order splits use, so they cannot deadlock.
+public class ConcurrentBPlusTree {
+
+    public final int INTERNAL_MAX;
+    public final int LEAF_MAX;
+    private final boolean packedKeys;
+
+    // guards the root reference itself
+    private final ReentrantReadWriteLock rootLatch = new ReentrantReadWriteLock();
+    private Node root;
+
+    // Stats
+    public final AtomicInteger totalSplits = new AtomicInteger();   // leaf + internal splits
+    public final AtomicInteger parentSplits = new AtomicInteger();  // internal splits (parent)
+
+    public ConcurrentBPlusTree() {
+        this(BPlusTree.DEFAULT_ORDER);
+    }
+
+    public ConcurrentBPlusTree(int order) {
+        this(new BPlusTree(order));
+    }
+
+    // copies the nodes of an already built tree into latched nodes; the records are shared, so
+    // source must not be used afterwards
+    public ConcurrentBPlusTree(BPlusTree source) {
+        this.LEAF_MAX = source.LEAF_MAX;
+        this.INTERNAL_MAX = source.INTERNAL_MAX;
+        this.packedKeys = source.packedKeys;
+        this.root = adopt(source.getRoot(), null, new LeafNode[1]);
+    }
+
+    // -------------------- LATCHED NODES --------------------
+    private static final class LatchedLeaf extends LeafNode {
+        final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+
+        LatchedLeaf(int capacity, boolean packedKeys) {
+            super(capacity, packedKeys);
+        }
+    }
+
+    private static final class LatchedInternal extends InternalNode {
+        final ReentrantReadWriteLock latch = new ReentrantReadWriteLock();
+
+        LatchedInternal(int capacity, boolean packedKeys) {
+            super(capacity, packedKeys);
+        }
+    }
+
+    private static ReentrantReadWriteLock latch(Node node) {
+        return node.isLeaf ? ((LatchedLeaf) node).latch : ((LatchedInternal) node).latch;
+    }
+
+    // latched copy of the subtree under node; prevLeaf carries the last leaf copied so far,
+    // to rebuild the leaf chain left to right
+    private Node adopt(Node node, InternalNode parent, LeafNode[] prevLeaf) {
+        Node copy;
+        if (node.isLeaf) {
+            LeafNode src = (LeafNode) node;
+            LatchedLeaf leaf = new LatchedLeaf(LEAF_MAX, packedKeys);
+            System.arraycopy(src.records, 0, leaf.records, 0, src.size);
+            if (src.keys != null) System.arraycopy(src.keys, 0, leaf.keys, 0, src.size);
+            leaf.size = src.size;
+            leaf.prev = prevLeaf[0];
+            if (prevLeaf[0] != null) prevLeaf[0].next = leaf;
+            prevLeaf[0] = leaf;
+            copy = leaf;
+        } else {
+            InternalNode src = (InternalNode) node;
+            LatchedInternal in = new LatchedInternal(INTERNAL_MAX, packedKeys);
+            for (int i = 0; i < src.numKeys; i++) in.setKey(i, src.key(i));
+            for (int i = 0; i <= src.numKeys; i++) in.children[i] = adopt(src.children[i], in, prevLeaf);
+            System.arraycopy(src.counts, 0, in.counts, 0, src.numKeys + 1);
+            in.numKeys = src.numKeys;
+            copy = in;
+        }
+        copy.parent = parent;
+        return copy;
+    }
+
+    // bulk-builds a tree from a part file and makes it concurrent
+    public static ConcurrentBPlusTree loadFromFile(String filename, int order) throws IOException {
+        BPlusTree tree = new BPlusTree(order);
+        tree.loadFromFile(filename);
+        return new ConcurrentBPlusTree(tree);
+    }
+
+    // -------------------- SEARCH --------------------
+    // find a PartRecord by ID; returns null if not found
+    public PartRecord search(String id) {
+        if (id == null) return null;
+        LeafNode leaf = readLeaf(id);
+        try {
+            return leaf.getRecord(id);
+        } finally {
+            latch(leaf).readLock().unlock();
+        }
+    }
+
+    // descends with read latches; returns the leaf read-latched
+    private LeafNode readLeaf(String id) {
+        rootLatch.readLock().lock();
+        Node node = root;
+        latch(node).readLock().lock();
+        rootLatch.readLock().unlock();
+        while (!node.isLeaf) {
+            Node child = ((InternalNode) node).children[((InternalNode) node).childIndex(id)];
+            latch(child).readLock().lock();
+            latch(node).readLock().unlock();
+            node = child;
+        }
+        return (LeafNode) node;
+    }
+
+    // descends with read latches on internal nodes; returns the leaf write-latched
+    private LeafNode writeLeaf(String id) {
+        rootLatch.readLock().lock();
+        Node node = root;
+        lockForLeafWrite(node);
+        rootLatch.readLock().unlock();
+        while (!node.isLeaf) {
+            Node child = ((InternalNode) node).children[((InternalNode) node).childIndex(id)];
+            lockForLeafWrite(child);
+            latch(node).readLock().unlock();
+            node = child;
+        }
+        return (LeafNode) node;
+    }
+
+    private static void lockForLeafWrite(Node node) {
+        if (node.isLeaf) latch(node).writeLock().lock();
+        else latch(node).readLock().lock();
+    }
+
+    // -------------------- INSERT --------------------
+    // Insert a new PartRecord; return false on duplicate or error
+    public boolean insert(PartRecord rec) {
+        if (rec == null || rec.id == null) return false;
+
+        // optimistic pass: only the leaf is write-latched
+        LeafNode leaf = writeLeaf(rec.id);
+        try {
+            if (leaf.contains(rec.id)) return false; // duplicate ID
+            if (leaf.size() < LEAF_MAX) {
+                leaf.insertSorted(rec);
+                return true;
+            }
+        } finally {
+            latch(leaf).writeLock().unlock();
+        }
+
+        // the leaf is full: redo the descent holding write latches on every unsafe ancestor
+        return insertPessimistic(rec);
+    }
+
+    private boolean insertPessimistic(PartRecord rec) {
+        Deque<Node> held = new ArrayDeque<>(); // write-latched path, top = deepest
+        rootLatch.writeLock().lock();
+        boolean rootHeld = true;
+        try {
+            Node node = root;
+            latch(node).writeLock().lock();
+            held.push(node);
+            if (isSafe(node)) {
+                rootLatch.writeLock().unlock();
+                rootHeld = false;
+            }
+            while (!node.isLeaf) {
+                Node child = ((InternalNode) node).children[((InternalNode) node).childIndex(rec.id)];
+                latch(child).writeLock().lock();
+                if (isSafe(child)) {
+                    // nothing above child can change: release ancestors
+                    while (!held.isEmpty()) latch(held.pop()).writeLock().unlock();
+                    if (rootHeld) {
+                        rootLatch.writeLock().unlock();
+                        rootHeld = false;
+                    }
+                }
+                held.push(child);
+                node = child;
+            }
+
+            LeafNode leaf = (LeafNode) node;
+            if (leaf.contains(rec.id)) return false;
+            leaf.insertSorted(rec);
+            if (leaf.size() > LEAF_MAX) splitLeaf(leaf, held);
+            return true;
+        } finally {
+            while (!held.isEmpty()) latch(held.pop()).writeLock().unlock();
+            if (rootHeld) rootLatch.writeLock().unlock();
+        }
+    }
+
+    // a node is safe for insert if one more entry cannot make it split
+    private boolean isSafe(Node node) {
+        if (node.isLeaf) return ((LeafNode) node).size() < LEAF_MAX;
+        return ((InternalNode) node).numKeys < INTERNAL_MAX;
+    }
+
+    // -------------------- SPLIT LEAF --------------------
+    // held contains the write-latched path with leaf on top; the parent, if it may change, is next
+    private void splitLeaf(LeafNode leaf, Deque<Node> held) {
+        int mid = leaf.size / 2;
+
+        LeafNode right = new LatchedLeaf(LEAF_MAX, packedKeys);
+        // move right half to new node, shrinking the left leaf
+        leaf.moveTailTo(mid, right);
+
+        // link siblings; the old right neighbour is latched left-to-right like a scan
+        LeafNode after = leaf.next;
+        if (after != null) {
+            latch(after).writeLock().lock();
+            after.prev = right;
+            latch(after).writeLock().unlock();
+        }
+        right.next = after;
+        right.prev = leaf;
+        leaf.next = right;
+
+        totalSplits.incrementAndGet();
+        Node top = held.pop();
+        insertIntoParent(leaf, right.records[0].id, right, held);
+        held.push(top);
+    }
+
+    // -------------------- INSERT INTO PARENT --------------------
+    private void insertIntoParent(Node left, String key, Node right, Deque<Node> held) {
+        if (held.isEmpty()) {
+            // left was the root (rootLatch is still held since the root was unsafe)
+            InternalNode newRoot = new LatchedInternal(INTERNAL_MAX, packedKeys);
+            newRoot.setKey(0, key);
+            newRoot.children[0] = left;
+            newRoot.children[1] = right;
+            newRoot.numKeys = 1;
+            root = newRoot;
+
+            parentSplits.incrementAndGet();
+            totalSplits.incrementAndGet();
+            return;
+        }
+
+        InternalNode parent = (InternalNode) held.peek();
+        // insert key at idx (separator) and right child at idx+1
+        parent.insertAt(parent.childIndex(key), key, right);
+
+        // if parent overflows, split internal node
+        if (parent.numKeys > INTERNAL_MAX) splitInternal(parent, held);
+    }
+
+    // -------------------- SPLIT INTERNAL --------------------
+    private void splitInternal(InternalNode node, Deque<Node> held) {
+        int mid = node.numKeys / 2; // promote node.key(mid)
+
+        InternalNode right = new LatchedInternal(INTERNAL_MAX, packedKeys);
+        // right keys/children = mid+1 .. end, left keeps 0..mid-1 keys and 0..mid children
+        String promote = node.moveTailTo(mid, right);
+
+        parentSplits.incrementAndGet();
+        totalSplits.incrementAndGet();
+        Node top = held.pop();
+        insertIntoParent(node, promote, right, held);
+        held.push(top);
+    }
+
+    // -------------------- UPDATE --------------------
+    // replaces the record with one carrying the new description, so readers never see a torn record
+    public boolean update(String id, String newDesc) {
+        if (id == null) return false;
+        LeafNode leaf = writeLeaf(id);
+        try {
+            int i = leaf.indexOf(id);
+            if (i < 0) return false;
+            leaf.records[i] = new PartRecord(id, newDesc);
+            return true;
+        } finally {
+            latch(leaf).writeLock().unlock();
+        }
+    }
+
+    // -------------------- DELETE --------------------
+    // removes the record from its leaf; leaves are not merged, so only the leaf is latched
+    public boolean delete(String id) {
+        if (id == null) return false;
+        LeafNode leaf = writeLeaf(id);
+        try {
+            return leaf.deleteRecord(id) != null;
+        } finally {
+            latch(leaf).writeLock().unlock();
+        }
+    }
+
+    // -------------------- RANGE SCAN --------------------
+    // collect 'count' records starting from startId (inclusive), crabbing along the leaf chain
+    public List<PartRecord> scanFrom(String startId, int count) {
+        List<PartRecord> out = new ArrayList<>();
+        LeafNode cur = readLeaf(startId);
+        int idx = cur.lowerBound(startId);
+        while (true) {
+            while (idx < cur.size && out.size() < count) out.add(cur.records[idx++]);
+            LeafNode next = cur.next;
+            if (next == null || out.size() >= count) {
+                latch(cur).readLock().unlock();
+                return out;
+            }
+            latch(next).readLock().lock();
+            latch(cur).readLock().unlock();
+            cur = next;
+            idx = 0;
+        }
+    }
+
+    // -------------------- UTIL / STATS --------------------
+    // the methods below latch the whole tree and are meant for quiescent checks
+
+    public int computeDepth() {
+        rootLatch.readLock().lock();
+        try {
+            int depth = 1;
+            for (Node node = root; !node.isLeaf; node = ((InternalNode) node).children[0]) depth++;
+            return depth;
+        } finally {
+            rootLatch.readLock().unlock();
+        }
+    }
+
+    public int countAllRecords() {
+        return scanFrom("", Integer.MAX_VALUE).size();
+    }
+
+    // verifies ordering, separator bounds, uniform depth and the leaf chain; throws IllegalStateException.
+    // Minimum occupancy and parent pointers are not checked: deletes don't merge and parents aren't kept.
+    public void checkInvariants() {
+        rootLatch.writeLock().lock();
+        try {
+            TreeInvariants.check(root, LEAF_MAX, INTERNAL_MAX, 0, 0, false);
+        } finally {
+            rootLatch.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package bptree;
+
+import java.util.*;
+
+// Secondary full-text index over PartRecord descriptions.
+// Descriptions are split into upper-case tokens of letters and digits. Each token maps to a
+// sorted list of part IDs (the ID Strings are shared with the records, so a posting costs one
+// reference). The tokens themselves are kept in a sorted map, so a partial word is a range of
+// neighbouring tokens.
+// Query syntax: whitespace-separated terms that must all match; a term ending in '*' matches
+// any token starting with it. Kept in sync by BPlusTree; not thread-safe on its own.
+public class DescriptionIndex {
+    private final TreeMap<String, Postings> tokens = new TreeMap<>();
+    private long postings = 0;
+
+    // -------------------- MAINTENANCE --------------------
+    public void add(PartRecord rec) {
+        for (String t : tokenize(rec.description)) {
+            tokens.computeIfAbsent(t, k -> new Postings()).add(rec.id);
+            postings++;
+        }
+    }
+
+    public void remove(PartRecord rec) {
+        remove(rec.id, rec.description);
+    }
+
+    public void remove(String id, String description) {
+        for (String t : tokenize(description)) {
+            Postings p = tokens.get(t);
+            if (p == null || !p.remove(id)) continue;
+            postings--;
+            if (p.size() == 0) tokens.remove(t);
+        }
+    }
+
+    // description of id changed from oldDesc to newDesc; tokens in both are left alone
+    public void replace(String id, String oldDesc, String newDesc) {
+        Set<String> before = tokenize(oldDesc), after = tokenize(newDesc);
+        for (String t : before) {
+            if (after.contains(t)) continue;
+            Postings p = tokens.get(t);
+            if (p == null || !p.remove(id)) continue;
+            postings--;
+            if (p.size() == 0) tokens.remove(t);
+        }
+        for (String t : after) {
+            if (before.contains(t)) continue;
+            tokens.computeIfAbsent(t, k -> new Postings()).add(id);
+            postings++;
+        }
+    }
+
+    // rebuilds the index from records sorted by ID, so every posting list is built by appending
+    public void rebuild(Iterable<PartRecord> sortedRecords) {
+        tokens.clear();
+        postings = 0;
+        for (PartRecord r : sortedRecords) add(r);
+    }
+
+    // -------------------- QUERIES --------------------
+    // sorted IDs whose description has every term of the query
+    public List<String> query(String query) {
+        List<String[]> lists = new ArrayList<>();
+        for (String t : terms(query)) {
+            lists.add(t.endsWith("*") ? prefixIds(t.substring(0, t.length() - 1)) : tokenIds(t));
+        }
+        if (lists.isEmpty()) return Collections.emptyList();
+
+        // intersect starting with the shortest list so the candidate set only shrinks
+        lists.sort(Comparator.comparingInt(a -> a.length));
+        String[] result = lists.get(0);
+        int n = result.length;
+        for (int k = 1; k < lists.size() && n > 0; k++) n = intersect(result, n, lists.get(k));
+        return Arrays.asList(Arrays.copyOf(result, n));
+    }
+
+    public List<String> withToken(String token) {
+        return Arrays.asList(tokenIds(token.toUpperCase(Locale.ROOT)));
+    }
+
+    public List<String> withPrefix(String prefix) {
+        return Arrays.asList(prefixIds(prefix.toUpperCase(Locale.ROOT)));
+    }
+
+    // same predicate as query(), evaluated directly against one description (for linear scans)
+    public static boolean matches(String description, String query) {
+        List<String> terms = terms(query);
+        if (terms.isEmpty()) return false;
+        Set<String> have = tokenize(description);
+        for (String t : terms) {
+            if (!t.endsWith("*")) {
+                if (!have.contains(t)) return false;
+                continue;
+            }
+            String prefix = t.substring(0, t.length() - 1);
+            boolean hit = false;
+            for (String h : have) {
+                if (h.startsWith(prefix)) {
+                    hit = true;
+                    break;
+                }
+            }
+            if (!hit) return false;
+        }
+        return true;
+    }
+
+    // query terms as tokens, with a trailing '*' kept on prefix terms. A word is split like a
+    // description ("AIL.OTBRD" needs both AIL and OTBRD); only its last token takes the '*'
+    private static List<String> terms(String query) {
+        List<String> out = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> toks = new ArrayList<>(tokenize(prefix ? word.substring(0, word.length() - 1) : word));
+            for (int i = 0; i < toks.size(); i++) {
+                out.add(prefix && i == toks.size() - 1 ? toks.get(i) + "*" : toks.get(i));
+            }
+        }
+        return out;
+    }
+
+    public int tokenCount() {
+        return tokens.size();
+    }
+
+    public long postingCount() {
+        return postings;
+    }
+
+    private String[] tokenIds(String token) {
+        Postings p = tokens.get(token);
+        return p == null ? new String[0] : p.toArray();
+    }
+
+    // union of the posting lists of every token starting with prefix
+    private String[] prefixIds(String prefix) {
+        SortedMap<String, Postings> range = tokens.subMap(prefix, prefix + Character.MAX_VALUE);
+        if (range.size() == 1) return range.values().iterator().next().toArray();
+        int total = 0;
+        for (Postings p : range.values()) total += p.size();
+        String[] all = new String[total];
+        int n = 0;
+        for (Postings p : range.values()) n = p.copyInto(all, n);
+        Arrays.sort(all);
+        // a record with several matching tokens shows up once per token
+        int u = 0;
+        for (int i = 0; i < n; i++) if (u == 0 || !all[u - 1].equals(all[i])) all[u++] = all[i];
+        return Arrays.copyOf(all, u);
+    }
+
+    // keeps the IDs of a[0..n) that are also in sorted b; returns the new length
+    private static int intersect(String[] a, int n, String[] b) {
+        int out = 0, j = 0;
+        for (int i = 0; i < n && j < b.length; i++) {
+            // binary search the rest of b since a is usually much shorter
+            int pos = Arrays.binarySearch(b, j, b.length, a[i]);
+            if (pos >= 0) {
+                a[out++] = a[i];
+                j = pos + 1;
+            } else {
+                j = -(pos + 1);
+            }
+        }
+        return out;
+    }
+
+    // -------------------- TOKENIZER --------------------
+    // distinct upper-case runs of letters and digits
+    static Set<String> tokenize(String description) {
+        if (description == null || description.isEmpty()) return Collections.emptySet();
+        Set<String> out = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= description.length(); i++) {
+            boolean word = i < description.length() && Character.isLetterOrDigit(description.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                out.add(description.substring(start, i).toUpperCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // -------------------- POSTINGS --------------------
+    // sorted ID list stored as a run of sorted blocks of at most BLOCK IDs, so an insert or a
+    // remove only shifts one block (plus the block table when a block splits or empties)
+    // instead of the whole list of a common token
+    private static final class Postings {
+        private static final int BLOCK = 128;
+
+        private String[][] blocks = new String[1][];
+        private int[] sizes = new int[1];
+        private int blockCount = 0;
+        private int size = 0;
+
+        void add(String id) {
+            if (blockCount == 0) {
+                blocks[0] = new String[4];
+                blockCount = 1;
+            }
+            int b = blockFor(id);
+            String[] block = blocks[b];
+            int n = sizes[b];
+            int i = n > 0 && block[n - 1].compareTo(id) < 0 ? n : -(Arrays.binarySearch(block, 0, n, id) + 1);
+            if (n == block.length) {
+                if (n == BLOCK) {
+                    // full: move the upper half into a new block and insert into whichever half fits
+                    splitBlock(b);
+                    if (i > BLOCK / 2) {
+                        b++;
+                        i -= BLOCK / 2;
+                    }
+                    block = blocks[b];
+                    n = sizes[b];
+                } else {
+                    block = blocks[b] = Arrays.copyOf(block, Math.min(BLOCK, n * 2));
+                }
+            }
+            System.arraycopy(block, i, block, i + 1, n - i);
+            block[i] = id;
+            sizes[b]++;
+            size++;
+        }
+
+        boolean remove(String id) {
+            if (blockCount == 0) return false;
+            int b = blockFor(id);
+            int i = Arrays.binarySearch(blocks[b], 0, sizes[b], id);
+            if (i < 0) return false;
+            String[] block = blocks[b];
+            System.arraycopy(block, i + 1, block, i, sizes[b] - i - 1);
+            block[--sizes[b]] = null;
+            size--;
+            if (sizes[b] == 0 && blockCount > 1) {
+                System.arraycopy(blocks, b + 1, blocks, b, blockCount - b - 1);
+                System.arraycopy(sizes, b + 1, sizes, b, blockCount - b - 1);
+                blocks[--blockCount] = null;
+            }
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String[] toArray() {
+            String[] out = new String[size];
+            copyInto(out, 0);
+            return out;
+        }
+
+        int copyInto(String[] dst, int at) {
+            for (int b = 0; b < blockCount; b++) {
+                System.arraycopy(blocks[b], 0, dst, at, sizes[b]);
+                at += sizes[b];
+            }
+            return at;
+        }
+
+        // last block whose first ID is <= id (block 0 if id is below everything)
+        private int blockFor(String id) {
+            int lo = 1, hi = blockCount;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (blocks[mid][0].compareTo(id) <= 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo - 1;
+        }
+
+        private void splitBlock(int b) {
+            if (blockCount == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blockCount * 2);
+                sizes = Arrays.copyOf(sizes, blockCount * 2);
+            }
+            System.arraycopy(blocks, b + 1, blocks, b + 2, blockCount - b - 1);
+            System.arraycopy(sizes, b + 1, sizes, b + 2, blockCount - b - 1);
+            String[] right = new String[BLOCK];
+            System.arraycopy(blocks[b], BLOCK / 2, right, 0, BLOCK / 2);
+            Arrays.fill(blocks[b], BLOCK / 2, BLOCK, null);
+            blocks[b + 1] = right;
+            sizes[b] = BLOCK / 2;
+            sizes[b + 1] = BLOCK / 2;
+            blockCount++;
+        }
+    }
+}
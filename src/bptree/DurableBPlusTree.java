@@ -0,0 +1,317 @@
+package bptree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// BPlusTree whose insert/update/delete are logged to a WriteAheadLog before they return.
+// The data directory holds:
+//   snapshot.bin          BinarySnapshot of every record, written by compact()
+//   delta-NNNNNN.dat      checkpoint N: the current state of every key changed since checkpoint N-1
+//   wal-NNNNNN.log        operations logged after checkpoint N
+// A checkpoint writes only the dirty keys, then drops the older log segments. Opening the
+// directory loads the snapshot, applies the deltas in order and replays the newest log segments.
+//
+// Changes are applied to the tree before their commit completes, so other threads can see a
+// change shortly before it is durable; the call that made it returns only once it is.
+public class DurableBPlusTree implements Closeable {
+
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final byte UPSERT = 1;
+    private static final byte TOMBSTONE = 2;
+
+    private final Path dir;
+    private final BPlusTree tree;
+    private final WriteAheadLog.SyncMode mode;
+    private final long intervalMillis;
+
+    // log segment size that triggers an automatic checkpoint
+    private long checkpointBytes = 64L * 1024 * 1024;
+
+    // guarded by this
+    private WriteAheadLog wal;
+    private int checkpointSeq;
+    private Set<String> dirty = new HashSet<>();
+
+    // recovery report
+    public long recoveryNanos;
+    public int recoveredDeltaEntries;
+    public int recoveredLogEntries;
+
+    public DurableBPlusTree(Path dir, WriteAheadLog.SyncMode mode) throws IOException {
+        this(dir, mode, 10, BPlusTree.DEFAULT_ORDER);
+    }
+
+    // intervalMillis is only used by SyncMode.INTERVAL
+    public DurableBPlusTree(Path dir, WriteAheadLog.SyncMode mode, long intervalMillis, int order) throws IOException {
+        this.dir = dir;
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+        this.tree = new BPlusTree(order);
+        Files.createDirectories(dir);
+        recover();
+    }
+
+    // -------------------- RECOVERY --------------------
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) tree.loadSnapshot(snapshot.toString());
+
+        List<Integer> deltas = sequences("delta-", ".dat");
+        for (int seq : deltas) recoveredDeltaEntries += applyDelta(deltaPath(seq));
+        checkpointSeq = deltas.isEmpty() ? 0 : deltas.get(deltas.size() - 1);
+
+        // segments older than the newest delta are already covered by it
+        for (int seq : sequences("wal-", ".log")) {
+            if (seq < checkpointSeq) {
+                Files.delete(walPath(seq));
+                continue;
+            }
+            recoveredLogEntries += WriteAheadLog.replay(walPath(seq), this::redo);
+            if (seq > checkpointSeq) checkpointSeq = seq;
+        }
+        wal = new WriteAheadLog(walPath(checkpointSeq), mode, intervalMillis);
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    private void redo(WriteAheadLog.Entry e) {
+        switch (e.op) {
+            case WriteAheadLog.INSERT:
+                tree.insert(new PartRecord(e.id, e.description));
+                break;
+            case WriteAheadLog.UPDATE:
+                if (tree.search(e.id) != null) tree.update(e.id, e.description);
+                break;
+            case WriteAheadLog.DELETE:
+                tree.delete(e.id);
+                break;
+            default:
+                throw new IllegalStateException("unknown log op " + e.op);
+        }
+        dirty.add(e.id);
+    }
+
+    // -------------------- OPERATIONS --------------------
+    public synchronized PartRecord search(String id) {
+        return tree.search(id);
+    }
+
+    public synchronized List<PartRecord> scanFrom(String startId, int count) {
+        return tree.scanFrom(startId, count);
+    }
+
+    // Insert a new PartRecord; return false on duplicate or error
+    public boolean insert(PartRecord rec) throws IOException {
+        if (rec == null || rec.id == null) return false;
+        WriteAheadLog log;
+        long lsn;
+        synchronized (this) {
+            if (tree.search(rec.id) != null) return false; // duplicate ID
+            log = wal;
+            lsn = log.append(WriteAheadLog.INSERT, rec.id, rec.description);
+            tree.insert(rec);
+            dirty.add(rec.id);
+        }
+        log.commit(lsn);
+        maybeCheckpoint();
+        return true;
+    }
+
+    // update the description of an existing record; returns true on success
+    public boolean update(String id, String newDesc) throws IOException {
+        if (id == null) return false;
+        WriteAheadLog log;
+        long lsn;
+        synchronized (this) {
+            if (tree.search(id) == null) return false;
+            log = wal;
+            lsn = log.append(WriteAheadLog.UPDATE, id, newDesc);
+            tree.update(id, newDesc);
+            dirty.add(id);
+        }
+        log.commit(lsn);
+        maybeCheckpoint();
+        return true;
+    }
+
+    // removes the record with this ID; returns false if it isn't in the tree
+    public boolean delete(String id) throws IOException {
+        if (id == null) return false;
+        WriteAheadLog log;
+        long lsn;
+        synchronized (this) {
+            if (tree.search(id) == null) return false;
+            log = wal;
+            lsn = log.append(WriteAheadLog.DELETE, id, null);
+            tree.delete(id);
+            dirty.add(id);
+        }
+        log.commit(lsn);
+        maybeCheckpoint();
+        return true;
+    }
+
+    // -------------------- CHECKPOINT --------------------
+    public synchronized void setCheckpointBytes(long bytes) {
+        this.checkpointBytes = bytes;
+    }
+
+    private synchronized void maybeCheckpoint() throws IOException {
+        if (wal.size() >= checkpointBytes) checkpoint();
+    }
+
+    // writes the dirty keys to a new delta file and starts a new log segment
+    public synchronized void checkpoint() throws IOException {
+        if (dirty.isEmpty()) return;
+        int seq = checkpointSeq + 1;
+
+        // ops from here on go to the new segment; the old one stays until the delta is durable
+        WriteAheadLog old = wal;
+        old.sync();
+        wal = new WriteAheadLog(walPath(seq), mode, intervalMillis);
+        checkpointSeq = seq;
+
+        writeDelta(seq, dirty);
+        dirty = new HashSet<>();
+
+        old.close();
+        for (int s : sequences("wal-", ".log")) {
+            if (s < seq) Files.delete(walPath(s));
+        }
+    }
+
+    // checkpoints, then folds snapshot and deltas into a new snapshot. The binary snapshot keeps
+    // full-length descriptions; the fixed-width part file would cut them to 65 characters
+    public synchronized void compact() throws IOException {
+        checkpoint();
+        // BinarySnapshot.write syncs a temp file and renames it into place
+        tree.saveSnapshot(dir.resolve(SNAPSHOT).toString(), true);
+        for (int s : sequences("delta-", ".dat")) Files.delete(deltaPath(s));
+    }
+
+    // delta layout: int count, then per key byte kind | string id | string description (upserts
+    // only), followed by the CRC32 of everything before it. A string is an int byte length and its
+    // UTF-8 bytes, so descriptions aren't limited to writeUTF's 64 KB
+    private void writeDelta(int seq, Set<String> keys) throws IOException {
+        Path tmp = dir.resolve(deltaPath(seq).getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(fos), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(keys.size());
+            for (String id : new TreeSet<>(keys)) {
+                PartRecord r = tree.search(id);
+                if (r == null) {
+                    out.writeByte(TOMBSTONE);
+                    writeString(out, id);
+                } else {
+                    out.writeByte(UPSERT);
+                    writeString(out, id);
+                    writeString(out, r.description == null ? "" : r.description);
+                }
+            }
+            out.flush();
+            long crc = checked.getChecksum().getValue();
+            out.writeLong(crc);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, deltaPath(seq), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private int applyDelta(Path path) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(path))) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                String id = readString(in);
+                if (kind == UPSERT) {
+                    String desc = readString(in);
+                    if (tree.search(id) != null) tree.update(id, desc);
+                    else tree.insert(new PartRecord(id, desc));
+                } else {
+                    tree.delete(id);
+                }
+            }
+            long expected = checked.getChecksum().getValue();
+            if (new DataInputStream(raw).readLong() != expected) throw new IOException("checksum mismatch in " + path);
+            return count;
+        } catch (EOFException e) {
+            throw new IOException("truncated checkpoint " + path, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) throw new IOException("bad string length " + len);
+        byte[] b = new byte[len];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // -------------------- FILES --------------------
+    private Path walPath(int seq) {
+        return dir.resolve(String.format("wal-%06d.log", seq));
+    }
+
+    private Path deltaPath(int seq) {
+        return dir.resolve(String.format("delta-%06d.dat", seq));
+    }
+
+    // sorted sequence numbers of the files named prefix + NNNNNN + suffix
+    private List<Integer> sequences(String prefix, String suffix) throws IOException {
+        List<Integer> out = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(prefix) && n.endsWith(suffix))
+                    .forEach(n -> out.add(Integer.parseInt(n.substring(prefix.length(), n.length() - suffix.length()))));
+        }
+        out.sort(null);
+        return out;
+    }
+
+    // -------------------- UTIL --------------------
+    public synchronized int countAllRecords() {
+        return tree.countAllRecords();
+    }
+
+    public synchronized long logBytes() {
+        return wal.size();
+    }
+
+    public synchronized long fsyncs() {
+        return wal.fsyncs;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        wal.close();
+    }
+}
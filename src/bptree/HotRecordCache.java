@@ -0,0 +1,253 @@
+package bptree;
+
+import java.util.HashMap;
+
+// Bounded cache of hot records that BPlusTree.search checks before it descends.
+// W_TINYLFU (Einziger et al.): a record found by the tree first goes into a small LRU window
+// (1% of the capacity). When it falls out of the window it only enters the main space if a
+// frequency sketch has seen its ID more often than the main space's eviction victim, so a burst
+// of one-off lookups can't flush the hot set. The main space is a segmented LRU: a hit in
+// probation (20%) promotes to protected (80%), and protected overflow drops back to probation.
+// LRU keeps one plain LRU list of the full capacity.
+// BPlusTree keeps the cached records in sync on update and delete. Not thread-safe: even get()
+// reorders the lists.
+public class HotRecordCache {
+    public enum Policy { LRU, W_TINYLFU }
+
+    private static final int WINDOW = 0, PROBATION = 1, PROTECTED = 2;
+
+    private final Policy policy;
+    private final int capacity, windowMax, mainMax, protectedMax;
+    private final HashMap<String, Entry> map;
+    private final Entry[] heads = new Entry[3]; // sentinels of circular lists, most recent first
+    private final int[] sizes = new int[3];
+    private final FrequencySketch sketch;       // null for LRU
+
+    private long hits, misses, evictions, rejections;
+
+    public HotRecordCache(int capacity, Policy policy) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be at least 1");
+        this.policy = policy;
+        this.capacity = capacity;
+        this.windowMax = policy == Policy.LRU ? capacity : Math.max(1, capacity / 100);
+        this.mainMax = capacity - windowMax;
+        this.protectedMax = mainMax * 8 / 10;
+        this.map = new HashMap<>(capacity * 4 / 3 + 1);
+        this.sketch = policy == Policy.LRU ? null : new FrequencySketch(capacity);
+        for (int s = 0; s < heads.length; s++) {
+            heads[s] = new Entry(null);
+            heads[s].prev = heads[s].next = heads[s];
+        }
+    }
+
+    // -------------------- LOOKUP --------------------
+    // cached record for id, or null. A hit counts as a use of id; after a miss, add() counts it
+    // if the tree has the record, so IDs that don't exist never reach the frequency sketch
+    public PartRecord get(String id) {
+        Entry e = map.get(id);
+        if (e == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        if (sketch != null) sketch.increment(id);
+        touch(e);
+        return e.record;
+    }
+
+    // cached record for id without counting a use
+    public PartRecord peek(String id) {
+        Entry e = map.get(id);
+        return e == null ? null : e.record;
+    }
+
+    private void touch(Entry e) {
+        unlink(e);
+        if (e.segment == PROBATION) {
+            link(e, PROTECTED);
+            if (sizes[PROTECTED] > protectedMax) {
+                Entry demoted = heads[PROTECTED].prev;
+                unlink(demoted);
+                link(demoted, PROBATION);
+            }
+        } else {
+            link(e, e.segment);
+        }
+    }
+
+    // -------------------- MAINTENANCE (BPlusTree) --------------------
+    // caches a record the tree just found after a miss
+    public void add(PartRecord rec) {
+        if (sketch != null) sketch.increment(rec.id);
+        if (map.containsKey(rec.id)) return;
+        Entry e = new Entry(rec);
+        map.put(rec.id, e);
+        link(e, WINDOW);
+        if (sizes[WINDOW] > windowMax) evictFromWindow();
+    }
+
+    // the record for rec.id was swapped for rec
+    public void replace(PartRecord rec) {
+        Entry e = map.get(rec.id);
+        if (e != null) e.record = rec;
+    }
+
+    public void remove(String id) {
+        Entry e = map.remove(id);
+        if (e != null) unlink(e);
+    }
+
+    // drops every entry; the frequency sketch keeps its counts
+    public void clear() {
+        map.clear();
+        for (int s = 0; s < heads.length; s++) {
+            heads[s].prev = heads[s].next = heads[s];
+            sizes[s] = 0;
+        }
+    }
+
+    // the window's LRU entry either takes the place of the main space's victim or is dropped
+    private void evictFromWindow() {
+        Entry candidate = heads[WINDOW].prev;
+        unlink(candidate);
+        if (sizes[PROBATION] + sizes[PROTECTED] < mainMax) {
+            link(candidate, PROBATION);
+            return;
+        }
+        evictions++;
+        if (mainMax > 0) {
+            Entry victim = sizes[PROBATION] > 0 ? heads[PROBATION].prev : heads[PROTECTED].prev;
+            if (sketch.frequency(candidate.record.id) > sketch.frequency(victim.record.id)) {
+                unlink(victim);
+                map.remove(victim.record.id);
+                link(candidate, PROBATION);
+                return;
+            }
+            rejections++;
+        }
+        map.remove(candidate.record.id);
+    }
+
+    private void link(Entry e, int segment) {
+        Entry head = heads[segment];
+        e.segment = segment;
+        e.prev = head;
+        e.next = head.next;
+        head.next.prev = e;
+        head.next = e;
+        sizes[segment]++;
+    }
+
+    private void unlink(Entry e) {
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+        sizes[e.segment]--;
+    }
+
+    // -------------------- STATS --------------------
+    public Policy policy() {
+        return policy;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public double hitRate() {
+        return hits + misses == 0 ? 0 : hits / (double) (hits + misses);
+    }
+
+    public long evictions() {
+        return evictions;
+    }
+
+    // window entries that lost to the main victim and were dropped (W_TINYLFU only)
+    public long rejections() {
+        return rejections;
+    }
+
+    public void resetStats() {
+        hits = misses = evictions = rejections = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s cache: %d/%d records, hit rate %.1f%% (%d hits, %d misses), %d evictions, %d admissions refused",
+                policy, size(), capacity, hitRate() * 100, hits, misses, evictions, rejections);
+    }
+
+    private static final class Entry {
+        PartRecord record;
+        int segment;
+        Entry prev, next;
+
+        Entry(PartRecord record) {
+            this.record = record;
+        }
+    }
+
+    // Count-min sketch with four rows of saturating 4-bit counters (kept in bytes). After
+    // 10 * capacity increments every counter is halved, so old popularity fades (TinyLFU reset).
+    private static final class FrequencySketch {
+        private static final int ROWS = 4;
+        private static final int MAX = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0x7a646e4d, 0xc2b2ae35, 0x85ebca6b};
+
+        private final byte[] table;
+        private final int shift;
+        private final int width;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int bits = 32 - Integer.numberOfLeadingZeros(Math.max(16, capacity) - 1);
+            this.width = 1 << bits;
+            this.shift = 32 - bits;
+            this.table = new byte[ROWS * width];
+            this.sampleSize = 10 * Math.max(16, capacity);
+        }
+
+        void increment(String id) {
+            int h = spread(id.hashCode());
+            boolean changed = false;
+            for (int r = 0; r < ROWS; r++) {
+                int i = r * width + ((h * SEEDS[r]) >>> shift);
+                if (table[i] < MAX) {
+                    table[i]++;
+                    changed = true;
+                }
+            }
+            if (changed && ++additions >= sampleSize) halve();
+        }
+
+        int frequency(String id) {
+            int h = spread(id.hashCode());
+            int min = MAX;
+            for (int r = 0; r < ROWS; r++) min = Math.min(min, table[r * width + ((h * SEEDS[r]) >>> shift)]);
+            return min;
+        }
+
+        private void halve() {
+            for (int i = 0; i < table.length; i++) table[i] >>= 1;
+            additions /= 2;
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
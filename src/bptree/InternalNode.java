@@ -0,0 +1,201 @@
+package bptree;
+
+import java.util.Arrays;
+
+public class InternalNode extends Node {
+    // separator keys, first numKeys slots used. With packed keys only the separators that
+    // KeyCodec can't represent exactly are kept here (null slots elsewhere), and the array
+    // itself stays null until the first one arrives; read separators through key(i)
+    public String[] keys;
+    public long[] packed; // KeyCodec-packed separators, or null when the tree compares Strings
+    public Node[] children; // numKeys + 1 slots used
+    public int[] counts; // records in each child's subtree (kept by BPlusTree, not ConcurrentBPlusTree)
+    public int numKeys;
+
+    public InternalNode(int capacity) {
+        this(capacity, true);
+    }
+
+    // capacity is the max number of keys; one spare slot allows overflow before a split
+    public InternalNode(int capacity, boolean packedKeys) {
+        this.keys = packedKeys ? null : new String[capacity + 1];
+        this.packed = packedKeys ? new long[capacity + 1] : null;
+        this.children = new Node[capacity + 2];
+        this.counts = new int[capacity + 2];
+        this.numKeys = 0;
+        this.parent = null;
+        this.isLeaf = false;
+    }
+
+    // index of the child whose subtree may contain id.
+    // keys are separators equal to first key of right child, so equal keys go right.
+    public int childIndex(String id) {
+        if (packed != null) return childIndex(KeyCodec.encode(id), id);
+        int lo = 0, hi = numKeys;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (id.compareTo(keys[mid]) >= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // same as childIndex(id) with the ID already packed; only valid when packed != null
+    public int childIndex(long key, String id) {
+        int lo = 0, hi = numKeys;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareAt(key, id, mid) >= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // compares a packed ID with separator i, decoding the separator only for an inexact tie
+    private int compareAt(long key, String id, int i) {
+        long pa = key >>> 1, pb = packed[i] >>> 1;
+        if (pa != pb) return pa < pb ? -1 : 1;
+        if (((key | packed[i]) & 1) == 0) return 0;
+        return id.compareTo(key(i));
+    }
+
+    // separator i
+    public String key(int i) {
+        if (packed == null) return keys[i];
+        String k = keys == null ? null : keys[i];
+        return k != null ? k : KeyCodec.decode(packed[i]);
+    }
+
+    // sets separator i
+    public void setKey(int i, String key) {
+        if (packed == null) {
+            keys[i] = key;
+            return;
+        }
+        packed[i] = KeyCodec.encode(key);
+        if (!KeyCodec.isExact(packed[i])) {
+            if (keys == null) keys = new String[packed.length];
+            keys[i] = key;
+        } else if (keys != null) {
+            keys[i] = null;
+        }
+    }
+
+    // inserts key at idx and its right child at idx+1 (with a count of 0 until the caller sets it)
+    public void insertAt(int idx, String key, Node right) {
+        if (keys != null) System.arraycopy(keys, idx, keys, idx + 1, numKeys - idx);
+        if (packed != null) System.arraycopy(packed, idx, packed, idx + 1, numKeys - idx);
+        System.arraycopy(children, idx + 1, children, idx + 2, numKeys - idx);
+        System.arraycopy(counts, idx + 1, counts, idx + 2, numKeys - idx);
+        setKey(idx, key);
+        children[idx + 1] = right;
+        counts[idx + 1] = 0;
+        numKeys++;
+    }
+
+    // splits around keys[mid]: right receives keys mid+1.. and children mid+1..,
+    // this node keeps keys 0..mid-1 and children 0..mid. Returns the promoted key.
+    public String moveTailTo(int mid, InternalNode right) {
+        int totalKeys = numKeys;
+        String promote = key(mid);
+        right.numKeys = totalKeys - mid - 1;
+        if (keys != null) {
+            if (right.keys == null) right.keys = new String[keys.length];
+            System.arraycopy(keys, mid + 1, right.keys, 0, right.numKeys);
+            Arrays.fill(keys, mid, totalKeys, null);
+        }
+        if (packed != null) System.arraycopy(packed, mid + 1, right.packed, 0, right.numKeys);
+        System.arraycopy(children, mid + 1, right.children, 0, right.numKeys + 1);
+        System.arraycopy(counts, mid + 1, right.counts, 0, right.numKeys + 1);
+        Arrays.fill(children, mid + 1, totalKeys + 1, null);
+        Arrays.fill(counts, mid + 1, totalKeys + 1, 0);
+        numKeys = mid;
+        return promote;
+    }
+
+    // position of child in children, by identity (-1 if absent)
+    public int indexOfChild(Node child) {
+        for (int i = 0; i <= numKeys; i++) {
+            if (children[i] == child) return i;
+        }
+        return -1;
+    }
+
+    // appends separator key and the child (holding count records) to its right
+    public void append(String key, Node child, int count) {
+        setKey(numKeys, key);
+        children[numKeys + 1] = child;
+        counts[numKeys + 1] = count;
+        numKeys++;
+    }
+
+    // prepends child (holding count records) as the new first child, with key separating it
+    // from the old first child
+    public void insertFirst(Node child, String key, int count) {
+        if (keys != null) System.arraycopy(keys, 0, keys, 1, numKeys);
+        if (packed != null) System.arraycopy(packed, 0, packed, 1, numKeys);
+        System.arraycopy(children, 0, children, 1, numKeys + 1);
+        System.arraycopy(counts, 0, counts, 1, numKeys + 1);
+        setKey(0, key);
+        children[0] = child;
+        counts[0] = count;
+        numKeys++;
+    }
+
+    // removes the first key and the first child
+    public void removeFirst() {
+        if (keys != null) System.arraycopy(keys, 1, keys, 0, numKeys - 1);
+        if (packed != null) System.arraycopy(packed, 1, packed, 0, numKeys - 1);
+        System.arraycopy(children, 1, children, 0, numKeys);
+        System.arraycopy(counts, 1, counts, 0, numKeys);
+        numKeys--;
+        if (keys != null) keys[numKeys] = null;
+        children[numKeys + 1] = null;
+        counts[numKeys + 1] = 0;
+    }
+
+    // removes the last key and the last child
+    public void removeLast() {
+        numKeys--;
+        if (keys != null) keys[numKeys] = null;
+        children[numKeys + 1] = null;
+        counts[numKeys + 1] = 0;
+    }
+
+    // removes key k and the child to its right (children[k + 1])
+    public void removeKeyAndRightChild(int k) {
+        if (keys != null) System.arraycopy(keys, k + 1, keys, k, numKeys - k - 1);
+        if (packed != null) System.arraycopy(packed, k + 1, packed, k, numKeys - k - 1);
+        System.arraycopy(children, k + 2, children, k + 1, numKeys - k - 1);
+        System.arraycopy(counts, k + 2, counts, k + 1, numKeys - k - 1);
+        numKeys--;
+        if (keys != null) keys[numKeys] = null;
+        children[numKeys + 1] = null;
+        counts[numKeys + 1] = 0;
+    }
+
+    // copy of this node's keys, children and counts; parent is left to the caller
+    public InternalNode copy() {
+        InternalNode c = new InternalNode(children.length - 2, packed != null);
+        if (keys != null) {
+            if (c.keys == null) c.keys = new String[keys.length];
+            System.arraycopy(keys, 0, c.keys, 0, numKeys);
+        }
+        if (packed != null) System.arraycopy(packed, 0, c.packed, 0, numKeys);
+        System.arraycopy(children, 0, c.children, 0, numKeys + 1);
+        System.arraycopy(counts, 0, c.counts, 0, numKeys + 1);
+        c.numKeys = numKeys;
+        return c;
+    }
+
+    public int childCount() {
+        return numKeys + 1;
+    }
+
+    // records in this whole subtree
+    public int totalCount() {
+        int total = 0;
+        for (int i = 0; i <= numKeys; i++) total += counts[i];
+        return total;
+    }
+}
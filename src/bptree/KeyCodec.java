@@ -0,0 +1,137 @@
+package bptree;
+
+import java.util.Arrays;
+
+// Packs part IDs into order-preserving longs so nodes can compare keys as integers.
+// The first 7 characters go into bits 63..8 of the key as one byte each (zero-padded),
+// shifted right by one to keep the value positive, and bit 0 is set when the ID does not
+// fit exactly (longer than 7 characters, a character above 0xFF, or a NUL). A character
+// above 0xFF and everything after it are packed as 0xFF so the prefix still sorts correctly. Comparing packed
+// values orders IDs like String.compareTo; only when two prefixes tie and one of the IDs is
+// inexact do callers need to fall back to comparing the Strings.
+public final class KeyCodec {
+
+    public static final int MAX_CHARS = 7;
+
+    private KeyCodec() {
+    }
+
+    public static long encode(String id) {
+        long prefix = 0;
+        boolean exact = id.length() <= MAX_CHARS;
+        boolean saturated = false;
+        int n = Math.min(id.length(), MAX_CHARS);
+        for (int i = 0; i < MAX_CHARS; i++) {
+            int c = 0;
+            if (saturated) {
+                c = 0xFF;
+            } else if (i < n) {
+                c = id.charAt(i);
+                if (c == 0) {
+                    exact = false;
+                } else if (c > 0xFF) {
+                    // the rest of the prefix can't be ordered any more: saturate it
+                    exact = false;
+                    saturated = true;
+                    c = 0xFF;
+                }
+            }
+            prefix = (prefix << 8) | c;
+        }
+        return (prefix << 1) | (exact ? 0 : 1);
+    }
+
+    // the ID of an exact key (see isExact)
+    public static String decode(long key) {
+        long prefix = key >>> 1;
+        char[] chars = new char[MAX_CHARS];
+        int n = 0;
+        for (int shift = 8 * (MAX_CHARS - 1); shift >= 0; shift -= 8) {
+            char c = (char) ((prefix >>> shift) & 0xFF);
+            if (c == 0) break; // padding: exact IDs hold no NUL
+            chars[n++] = c;
+        }
+        return new String(chars, 0, n);
+    }
+
+    // true if the ID is fully represented by its packed key
+    public static boolean isExact(long key) {
+        return (key & 1) == 0;
+    }
+
+    // compares two IDs given their packed keys, touching the Strings only for inexact ties
+    public static int compare(long ka, String a, long kb, String b) {
+        long pa = ka >>> 1, pb = kb >>> 1;
+        if (pa != pb) return pa < pb ? -1 : 1;
+        if (((ka | kb) & 1) == 0) return 0;
+        return a.compareTo(b);
+    }
+
+    // indexes of ids in ascending ID order (nulls first, equal IDs in input order).
+    // Sorts the packed keys with an LSD radix sort and only compares Strings to order ties
+    // between inexact keys, which is much cheaper than a comparison sort on Strings.
+    public static int[] sortedOrder(String[] ids) {
+        int n = ids.length;
+        if (n == 0) return new int[0];
+        long[] keys = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            keys[i] = ids[i] == null ? -1 : encode(ids[i]); // -1 sorts below every key once offset
+        }
+        if (inOrder(ids, keys)) return order; // already sorted, like most batches read from a file
+
+        long[] keyBuf = new long[n];
+        int[] orderBuf = new int[n];
+        int[] counts = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) counts[digit(keys[i], shift) + 1]++;
+            if (counts[digit(keys[0], shift) + 1] == n) continue; // every key has the same byte here
+            for (int d = 0; d < 256; d++) counts[d + 1] += counts[d];
+            for (int i = 0; i < n; i++) {
+                int pos = counts[digit(keys[i], shift)]++;
+                keyBuf[pos] = keys[i];
+                orderBuf[pos] = order[i];
+            }
+            long[] tk = keys; keys = keyBuf; keyBuf = tk;
+            int[] to = order; order = orderBuf; orderBuf = to;
+        }
+
+        // runs with the same packed prefix that involve an inexact ID still need a String order
+        int i = 0;
+        while (i < n) {
+            int j = i + 1;
+            boolean inexact = (keys[i] & 1) != 0;
+            while (j < n && keys[j] >>> 1 == keys[i] >>> 1 && ids[order[j]] != null && ids[order[i]] != null) {
+                inexact |= (keys[j] & 1) != 0;
+                j++;
+            }
+            if (inexact && j - i > 1) {
+                Integer[] run = new Integer[j - i];
+                for (int k = i; k < j; k++) run[k - i] = order[k];
+                Arrays.sort(run, (x, y) -> ids[x].compareTo(ids[y])); // stable
+                for (int k = i; k < j; k++) order[k] = run[k - i];
+            }
+            i = j;
+        }
+        return order;
+    }
+
+    // true if the non-null ids are already in ascending order
+    private static boolean inOrder(String[] ids, long[] keys) {
+        if (ids[0] == null) return false;
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] == null) return false;
+            long pa = keys[i - 1] >>> 1, pb = keys[i] >>> 1;
+            if (pa > pb) return false;
+            if (pa == pb && ((keys[i - 1] | keys[i]) & 1) != 0 && ids[i - 1].compareTo(ids[i]) > 0) return false;
+        }
+        return true;
+    }
+
+    // byte of the key at shift, with the sign flipped so the null marker -1 sorts first
+    private static int digit(long key, int shift) {
+        return (int) (((key + Long.MIN_VALUE) >>> shift) & 0xFF);
+    }
+}
@@ -0,0 +1,68 @@
+package bptree;
+
+import java.util.Arrays;
+
+// Fixed-size log-linear histogram of nanosecond latencies. Values are grouped by their highest
+// set bit and every power of two is split into 16 sub-buckets, so a reported percentile is at
+// most about 6% above the true value. Recording is a few shifts and one array increment.
+// Not thread-safe: one thread records, readers on other threads see approximate counts.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+
+    // row 0 holds 0..15 exactly; row r >= 1 holds [16 << (r-1), 16 << r) in 16 equal steps
+    private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+    private long total, sum, max;
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        total++;
+        sum += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    static int bucket(long v) {
+        if (v < SUB) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (shift + 1) * SUB + (int) (v >>> shift) - SUB;
+    }
+
+    // largest value that falls into bucket b
+    static long upperBound(int b) {
+        int row = b / SUB, off = b % SUB;
+        if (row == 0) return off;
+        return ((long) (SUB + off + 1) << (row - 1)) - 1;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return total == 0 ? 0 : sum / (double) total;
+    }
+
+    // smallest bucket bound that covers p percent of the recorded values (0 if empty)
+    public long percentile(double p) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) return Math.min(upperBound(b), max);
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+}
@@ -0,0 +1,164 @@
+package bptree;
+
+import java.util.Arrays;
+
+public class LeafNode extends Node {
+
+    // sorted records stored inside this leaf; only the first 'size' slots are used.
+    // One spare slot lets a leaf overflow by one record before it is split.
+    public PartRecord[] records;
+
+    // KeyCodec-packed ID of each record, or null when the tree compares String IDs
+    public long[] keys;
+
+    // number of records currently stored
+    public int size;
+
+    // points to next leaf node in the linked leaf chain
+    public LeafNode next;
+
+    // points to previous leaf node
+    public LeafNode prev;
+
+    public LeafNode(int capacity) {
+        this(capacity, true);
+    }
+
+    // constructor initializes empty record array and pointers
+    public LeafNode(int capacity, boolean packedKeys) {
+        this.records = new PartRecord[capacity + 1];
+        this.keys = packedKeys ? new long[capacity + 1] : null;
+        this.size = 0;
+        this.next = null;
+        this.prev = null;
+        this.parent = null;
+        this.isLeaf = true;
+    }
+
+    // binary search by ID: index of the record, or -(insertion point) - 1 if absent
+    public int indexOf(String id) {
+        if (keys != null) return indexOf(KeyCodec.encode(id), id);
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = records[mid].id.compareTo(id);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    // same as indexOf(id) with the ID already packed; only valid when keys != null
+    public int indexOf(long key, String id) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = KeyCodec.compare(keys[mid], records[mid].id, key, id);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    // index of the first record whose ID is >= id
+    public int lowerBound(String id) {
+        int i = indexOf(id);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    // checks if a record already exists with this ID in this leaf
+    public boolean contains(String id) {
+        return indexOf(id) >= 0;
+    }
+
+    // inserts a PartRecord into this leaf in sorted order based on the Part ID
+    public void insertSorted(PartRecord record) {
+        long key = keys != null ? KeyCodec.encode(record.id) : 0;
+        // finds correct index based on lexicographic order of the record's ID
+        int i = keys != null ? indexOf(key, record.id) : indexOf(record.id);
+        if (i < 0) i = -(i + 1);
+
+        // inserts at correct sorted position
+        System.arraycopy(records, i, records, i + 1, size - i);
+        records[i] = record;
+        if (keys != null) {
+            System.arraycopy(keys, i, keys, i + 1, size - i);
+            keys[i] = key;
+        }
+        size++;
+    }
+
+    // appends a record that is known to sort after every record in this leaf
+    public void append(PartRecord record) {
+        if (keys != null) keys[size] = KeyCodec.encode(record.id);
+        records[size++] = record;
+    }
+
+    // removes every record
+    public void clear() {
+        Arrays.fill(records, 0, size, null);
+        size = 0;
+    }
+
+    // moves records [from, size) to the end of leaf right
+    public void moveTailTo(int from, LeafNode right) {
+        int n = size - from;
+        System.arraycopy(records, from, right.records, right.size, n);
+        if (keys != null) System.arraycopy(keys, from, right.keys, right.size, n);
+        right.size += n;
+        Arrays.fill(records, from, size, null);
+        size = from;
+    }
+
+    // copy of this leaf's records; links and parent are left to the caller
+    public LeafNode copy() {
+        LeafNode c = new LeafNode(records.length - 1, keys != null);
+        System.arraycopy(records, 0, c.records, 0, size);
+        if (keys != null) System.arraycopy(keys, 0, c.keys, 0, size);
+        c.size = size;
+        return c;
+    }
+
+    // returns the number of records currently stored in this leaf
+    public int size() {
+        return size;
+    }
+
+    // retrieves an existing record from this leaf by ID (returns null if not found)
+    public PartRecord getRecord(String id) {
+        int i = indexOf(id);
+        return i >= 0 ? records[i] : null;
+    }
+
+    // updates the description of a record stored inside this leaf
+    public boolean UpdateRecord(String id, String newDescription) {
+        PartRecord r = getRecord(id);
+
+        if (r == null) {
+            System.out.println("Error: Can't update. This Record has not been Found");
+            return false;
+        }
+
+        r.UpdateDescription(newDescription);
+        return true;
+    }
+    // ---------------- DELETE record from this leaf ----------------
+    public PartRecord deleteRecord(String id) {
+        int i = indexOf(id);
+        if (i < 0) return null; // ID not found
+
+        return removeAt(i);   // remove and return deleted record
+    }
+
+    // removes and returns the record at index i
+    public PartRecord removeAt(int i) {
+        PartRecord removed = records[i];
+        System.arraycopy(records, i + 1, records, i, size - i - 1);
+        if (keys != null) System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        records[--size] = null;
+        return removed;
+    }
+
+}
@@ -0,0 +1,207 @@
+package bptree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+import javax.management.JMException;
+
+public class Main {
+    public static void main(String[] argv) {
+        // "--serve <host:port | unix:path>" answers PartServer commands instead of showing the menu
+        List<String> rest = new ArrayList<>(Arrays.asList(argv));
+        String serveAddress = null;
+        int serveAt = rest.indexOf("--serve");
+        if (serveAt >= 0 && serveAt + 1 < rest.size()) {
+            serveAddress = rest.remove(serveAt + 1);
+            rest.remove(serveAt);
+        }
+        String[] args = rest.toArray(new String[0]);
+        String filename = "partfile.txt"; // default file name
+        if (args.length >= 1) filename = args[0];
+        int order = BPlusTree.DEFAULT_ORDER; // optional second argument: tree order
+        if (args.length >= 2) order = Integer.parseInt(args[1]);
+        BPlusTree tree = new BPlusTree(order);
+        // latencies and structure show up in "Print stats" and over JMX (bptree:type=TreeMetrics)
+        TreeMetrics metrics = tree.enableMetrics();
+        if (metrics != null) {
+            try {
+                metrics.register("main");
+            } catch (JMException e) {
+                System.out.println("Warning: could not register metrics MBean: " + e.getMessage());
+            }
+        }
+
+        // binary snapshots are recognised by their header; anything else is the text part file
+        boolean binary = BinarySnapshot.isSnapshot(filename);
+        System.out.println("Loading " + filename + (binary ? " (binary snapshot)" : "") + " ...");
+        long loadStart = System.nanoTime();
+        try {
+            PartFileReader.LoadStats stats = binary ? tree.loadSnapshot(filename)
+                    : tree.loadFromFileParallel(filename, Runtime.getRuntime().availableProcessors());
+            System.out.println("Read " + stats);
+        } catch (IOException e) {
+            System.out.println("Warning: could not load file: " + e.getMessage());
+        }
+        long loadMs = (System.nanoTime() - loadStart) / 1_000_000;
+        System.out.printf("Loaded %d records in %d ms (average leaf fill %.1f%%).%n",
+                tree.countAllRecords(), loadMs, tree.averageLeafFill() * 100);
+        if (metrics != null) metrics.refresh(); // leaf fill bands of the loaded tree for JMX
+        long indexStart = System.nanoTime();
+        tree.enableDescriptionIndex();
+        System.out.printf("Indexed %d description tokens in %d ms.%n",
+                tree.getDescriptionIndex().tokenCount(), (System.nanoTime() - indexStart) / 1_000_000);
+        System.out.println();
+
+        if (serveAddress != null) {
+            serve(tree, serveAddress);
+            return;
+        }
+
+        Scanner sc = new Scanner(System.in);
+        boolean running = true;
+        while (running) {
+            System.out.println("\nMenu:");
+            System.out.println("1) Search part by ID");
+            System.out.println("2) Add (Insert) new part");
+            System.out.println("3) Update part description");
+            System.out.println("4) Display next 10 parts (from ID)");
+            System.out.println("5) Save to file");
+            System.out.println("6) Print stats");
+            System.out.println("7) Delete part");
+            System.out.println("8) Search descriptions");
+            System.out.println("9) Exit");
+            System.out.print("Choose option: ");
+            String opt = sc.nextLine().trim();
+
+            switch (opt) {
+                case "1":
+                    System.out.print("Enter Part ID: ");
+                    String sId = sc.nextLine().trim();
+                    PartRecord found = tree.search(sId);
+                    if (found == null) System.out.println("Not found.");
+                    else System.out.println(found);
+                    break;
+
+                case "2":
+                    System.out.print("New Part ID: ");
+                    String newId = sc.nextLine().trim();
+                    if (newId.length() == 0) { System.out.println("Invalid ID."); break; }
+                    System.out.print("Description: ");
+                    String desc = sc.nextLine().trim();
+                    boolean ok = tree.insert(new PartRecord(newId, desc));
+                    if (!ok) System.out.println("Insert failed: duplicate or error.");
+                    else System.out.println("Inserted.");
+                    break;
+
+                case "3":
+                    System.out.print("Part ID to update: ");
+                    String uId = sc.nextLine().trim();
+                    PartRecord recToUpdate = tree.search(uId);
+                    if (recToUpdate == null) { System.out.println("Not found."); break; }
+                    System.out.println("Old: " + recToUpdate);
+                    System.out.print("New description: ");
+                    String newDescVal = sc.nextLine().trim();
+                    boolean updated = tree.update(uId, newDescVal);
+                    if (updated) System.out.println("Updated.");
+                    else System.out.println("Update failed.");
+                    break;
+
+                case "4":
+                    System.out.print("Start Part ID: ");
+                    String start = sc.nextLine().trim();
+                    tree.displayNextTen(start);
+                    break;
+
+                case "5":
+                    System.out.print("Save filename (enter for default '" + filename + "'): ");
+                    String out = sc.nextLine().trim();
+                    if (out.isEmpty()) out = filename;
+                    System.out.print("Format (t)ext or (b)inary snapshot (enter for " + (binary ? "binary" : "text") + "): ");
+                    String fmt = sc.nextLine().trim().toLowerCase();
+                    boolean saveBinary = fmt.isEmpty() ? binary : fmt.startsWith("b");
+                    try {
+                        save(tree, out, saveBinary);
+                        System.out.println("Saved to " + out);
+                    } catch (IOException e) {
+                        System.out.println("Save failed: " + e.getMessage());
+                    }
+                    break;
+
+                case "6":
+                    tree.printStats();
+                    break;
+
+                case "7":
+                    System.out.print("Enter Part ID to delete: ");
+                    String dId = sc.nextLine().trim();
+                    if (dId.isEmpty()) { System.out.println("Invalid ID."); break; }
+                    PartRecord toDelete = tree.search(dId);
+                    if (toDelete == null) { System.out.println("Record not found."); break; }
+
+                    // Confirm deletion
+                    System.out.println("Found: " + toDelete);
+                    System.out.print("Are you sure you want to delete this record? (Y/N): ");
+                    String ans = sc.nextLine().trim().toLowerCase();
+                    if (!(ans.equals("y") || ans.equals("yes"))) {
+                        System.out.println("Deletion cancelled.");
+                        break;
+                    }
+
+                    boolean deleted = tree.delete(dId);
+                    if (deleted) System.out.println("Record '" + dId + "' deleted successfully.");
+                    else System.out.println("Delete failed.");
+                    break;
+
+                case "8":
+                    System.out.print("Words to find (end a word with * to match its prefix): ");
+                    String query = sc.nextLine().trim();
+                    List<PartRecord> matches = tree.findByDescription(query);
+                    for (PartRecord r : matches) System.out.println(r);
+                    System.out.println(matches.size() + " matching part(s).");
+                    break;
+
+                case "9":
+                    System.out.print("Save changes before exit? (y/N): ");
+                    String s = sc.nextLine().trim().toLowerCase();
+                    if (s.equals("y") || s.equals("yes")) {
+                        try {
+                            save(tree, filename, binary);
+                            System.out.println("Saved.");
+                        } catch (IOException e) {
+                            System.out.println("Save failed: " + e.getMessage());
+                        }
+                    }
+                    System.out.println("Exiting.");
+                    running = false;
+                    break;
+
+
+
+                default:
+                    System.out.println("Invalid option.");
+            }
+        }
+
+        sc.close();
+    }
+
+    private static void serve(BPlusTree tree, String address) {
+        try (PartServer server = new PartServer(tree, PartServer.parseAddress(address))) {
+            System.out.println("Serving on " + server.getLocalAddress() + " (GET, PUT, UPDATE, DEL, RANGE, STATS; one command per line).");
+            server.run();
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Server failed: " + e.getMessage());
+        }
+    }
+
+    private static void save(BPlusTree tree, String filename, boolean binary) throws IOException {
+        long start = System.nanoTime();
+        if (binary) tree.saveSnapshot(filename, true);
+        else tree.saveToFile(filename);
+        System.out.printf("Wrote %d bytes in %d ms.%n", Files.size(Paths.get(filename)), (System.nanoTime() - start) / 1_000_000);
+    }
+}
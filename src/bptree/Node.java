@@ -0,0 +1,9 @@
+package bptree;
+
+abstract class Node {
+    InternalNode parent;
+    boolean isLeaf;
+
+    // BPlusTree snapshot epoch the node was created in; older nodes may be shared with a Snapshot
+    int epoch;
+}
@@ -0,0 +1,414 @@
+package bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Variant of BPlusTree whose records live off-heap in a RecordArena. A leaf only holds the
+// KeyCodec-packed IDs and the arena slots of its records, so the heap keeps a few objects per
+// leaf instead of three per record (the PartRecord and its two Strings), and the collector has
+// far less to trace. Internal nodes are the ordinary InternalNode. search, scanFrom and range
+// copy the fields into a new PartRecord for each record they return.
+// IDs longer than RecordArena.ID_BYTES and descriptions longer than DESC_BYTES (in UTF-8) are
+// refused. delete removes the record from its leaf without rebalancing, like PagedBPlusTree.
+// Not thread-safe.
+public class OffHeapBPlusTree implements Closeable {
+    private final int leafMax;
+    private final int internalMax;
+    private final RecordArena arena = new RecordArena();
+    private Node root;
+    private int count = 0;
+
+    // Stats
+    public int totalSplits = 0;     // leaf + internal splits
+    public int parentSplits = 0;    // internal splits (parent)
+    public long refused = 0;        // records that didn't fit a slot
+
+    public OffHeapBPlusTree() {
+        this(BPlusTree.DEFAULT_ORDER);
+    }
+
+    public OffHeapBPlusTree(int order) {
+        if (order < 3) throw new IllegalArgumentException("tree order must be at least 3");
+        this.leafMax = order;
+        this.internalMax = order;
+        this.root = new Leaf(order);
+    }
+
+    // keys and arena slots of up to leafMax records, sorted by ID; one spare slot for overflow
+    static final class Leaf extends Node {
+        final long[] keys;
+        final int[] slots;
+        int size;
+        Leaf next;
+
+        Leaf(int capacity) {
+            keys = new long[capacity + 1];
+            slots = new int[capacity + 1];
+            isLeaf = true;
+        }
+    }
+
+    // -------------------- SEARCH --------------------
+    // find a record by ID; returns a new PartRecord or null if not found
+    public PartRecord search(String id) {
+        if (id == null) return null;
+        long key = KeyCodec.encode(id);
+        Leaf leaf = findLeaf(key, id);
+        int i = indexOf(leaf, key, id);
+        return i >= 0 ? arena.record(leaf.slots[i]) : null;
+    }
+
+    // like search(id) != null, without creating a PartRecord
+    public boolean contains(String id) {
+        if (id == null) return false;
+        long key = KeyCodec.encode(id);
+        return indexOf(findLeaf(key, id), key, id) >= 0;
+    }
+
+    // -------------------- INSERT --------------------
+    // Insert a new record; return false on duplicate, error or a record too long for a slot
+    public boolean insert(PartRecord rec) {
+        if (rec == null || rec.id == null) return false;
+        if (!RecordArena.fits(rec.id, rec.description)) {
+            refused++;
+            return false;
+        }
+        long key = KeyCodec.encode(rec.id);
+        Leaf leaf = findLeaf(key, rec.id);
+        int i = indexOf(leaf, key, rec.id);
+        if (i >= 0) return false; // duplicate ID
+        i = -(i + 1);
+
+        System.arraycopy(leaf.keys, i, leaf.keys, i + 1, leaf.size - i);
+        System.arraycopy(leaf.slots, i, leaf.slots, i + 1, leaf.size - i);
+        leaf.keys[i] = key;
+        leaf.slots[i] = arena.allocate(rec.id, rec.description);
+        leaf.size++;
+        count++;
+        // an append to the last leaf (a sorted load) keeps the left leaf full
+        if (leaf.size > leafMax) splitLeaf(leaf, leaf.next == null && i == leaf.size - 1 ? leafMax : leaf.size / 2);
+        return true;
+    }
+
+    // -------------------- UPDATE --------------------
+    // update the description of an existing record; returns true on success
+    public boolean update(String id, String newDesc) {
+        if (id == null) return false;
+        long key = KeyCodec.encode(id);
+        Leaf leaf = findLeaf(key, id);
+        int i = indexOf(leaf, key, id);
+        return i >= 0 && arena.setDescription(leaf.slots[i], newDesc);
+    }
+
+    // -------------------- DELETE --------------------
+    // removes the record from its leaf (no rebalancing); returns false if not found
+    public boolean delete(String id) {
+        if (id == null) return false;
+        long key = KeyCodec.encode(id);
+        Leaf leaf = findLeaf(key, id);
+        int i = indexOf(leaf, key, id);
+        if (i < 0) return false;
+        arena.free(leaf.slots[i]);
+        System.arraycopy(leaf.keys, i + 1, leaf.keys, i, leaf.size - i - 1);
+        System.arraycopy(leaf.slots, i + 1, leaf.slots, i, leaf.size - i - 1);
+        leaf.size--;
+        count--;
+        return true;
+    }
+
+    // -------------------- RANGE SCAN --------------------
+    // collect 'count' records starting from startId (inclusive)
+    public List<PartRecord> scanFrom(String startId, int count) {
+        List<PartRecord> out = new ArrayList<>();
+        Iterator<PartRecord> it = iterator(startId, null);
+        while (out.size() < count && it.hasNext()) out.add(it.next());
+        return out;
+    }
+
+    // lazy ascending scan of [lo, hi); null bounds are open
+    public Stream<PartRecord> range(String lo, String hi) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(lo, hi),
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    public Iterator<PartRecord> iterator(String lo, String hi) {
+        Leaf first;
+        int start;
+        if (lo == null) {
+            Node n = root;
+            while (!n.isLeaf) n = ((InternalNode) n).children[0];
+            first = (Leaf) n;
+            start = 0;
+        } else {
+            long key = KeyCodec.encode(lo);
+            first = findLeaf(key, lo);
+            int i = indexOf(first, key, lo);
+            start = i >= 0 ? i : -(i + 1);
+        }
+        long hiKey = hi == null ? 0 : KeyCodec.encode(hi);
+        return new Iterator<PartRecord>() {
+            private Leaf leaf = first;
+            private int pos = start;
+
+            @Override
+            public boolean hasNext() {
+                while (leaf != null && pos >= leaf.size) {
+                    leaf = leaf.next;
+                    pos = 0;
+                }
+                if (leaf == null) return false;
+                if (hi != null && compare(leaf, pos, hiKey, hi) >= 0) {
+                    leaf = null;
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            public PartRecord next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return arena.record(leaf.slots[pos++]);
+            }
+        };
+    }
+
+    // -------------------- FIND LEAF --------------------
+    private Leaf findLeaf(long key, String id) {
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            node = in.children[in.childIndex(key, id)];
+        }
+        return (Leaf) node;
+    }
+
+    // binary search by ID: index of the record, or -(insertion point) - 1 if absent
+    private int indexOf(Leaf leaf, long key, String id) {
+        int lo = 0, hi = leaf.size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(leaf, mid, key, id);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    // compares record i of leaf with id; the ID is only read from the arena for inexact ties
+    private int compare(Leaf leaf, int i, long key, String id) {
+        long a = leaf.keys[i];
+        if (a >>> 1 != key >>> 1) return a >>> 1 < key >>> 1 ? -1 : 1;
+        if (((a | key) & 1) == 0) return 0;
+        return arena.id(leaf.slots[i]).compareTo(id);
+    }
+
+    // -------------------- SPLIT LEAF --------------------
+    // moves records [at, size) to a new right sibling
+    private void splitLeaf(Leaf leaf, int at) {
+        Leaf right = new Leaf(leafMax);
+        int n = leaf.size - at;
+        System.arraycopy(leaf.keys, at, right.keys, 0, n);
+        System.arraycopy(leaf.slots, at, right.slots, 0, n);
+        right.size = n;
+        leaf.size = at;
+        right.next = leaf.next;
+        leaf.next = right;
+        right.parent = leaf.parent;
+        insertIntoParent(leaf, arena.id(right.slots[0]), right);
+        totalSplits++;
+    }
+
+    // -------------------- INSERT INTO PARENT --------------------
+    private void insertIntoParent(Node left, String key, Node right) {
+        if (left.parent == null) {
+            InternalNode newRoot = new InternalNode(internalMax);
+            newRoot.setKey(0, key);
+            newRoot.children[0] = left;
+            newRoot.children[1] = right;
+            newRoot.numKeys = 1;
+            left.parent = newRoot;
+            right.parent = newRoot;
+            root = newRoot;
+            parentSplits++;
+            totalSplits++;
+            return;
+        }
+        InternalNode parent = left.parent;
+        parent.insertAt(parent.childIndex(key), key, right);
+        right.parent = parent;
+        if (parent.numKeys > internalMax) splitInternal(parent);
+    }
+
+    // -------------------- SPLIT INTERNAL --------------------
+    private void splitInternal(InternalNode node) {
+        InternalNode right = new InternalNode(internalMax);
+        String promote = node.moveTailTo(node.numKeys / 2, right);
+        for (int i = 0; i <= right.numKeys; i++) right.children[i].parent = right;
+        right.parent = node.parent;
+        insertIntoParent(node, promote, right);
+        parentSplits++;
+    }
+
+    // -------------------- BULK LOAD --------------------
+    // replaces the tree contents, building it bottom-up with leaves filled to 90%. Unsorted
+    // input is sorted once; for duplicate IDs the first record wins. Returns the records loaded
+    public int bulkLoad(List<PartRecord> records) {
+        List<PartRecord> sorted = records;
+        for (int i = 1; i < records.size(); i++) {
+            if (records.get(i - 1).id.compareTo(records.get(i).id) > 0) {
+                sorted = new ArrayList<>(records);
+                sorted.sort(Comparator.comparing(r -> r.id)); // stable, so first duplicate stays first
+                break;
+            }
+        }
+        List<PartRecord> unique = new ArrayList<>(sorted.size());
+        for (PartRecord r : sorted) {
+            if (!unique.isEmpty() && unique.get(unique.size() - 1).id.equals(r.id)) continue;
+            if (!RecordArena.fits(r.id, r.description)) {
+                refused++;
+                continue;
+            }
+            unique.add(r);
+        }
+        arena.close();
+        count = unique.size();
+
+        // pack leaves up to 90% and link the leaf chain
+        List<Node> level = new ArrayList<>();
+        List<String> firstKeys = new ArrayList<>();
+        int leafCap = Math.max(1, (int) Math.round(leafMax * 0.9));
+        Leaf prev = null;
+        for (int[] range : BPlusTree.evenGroups(unique.size(), leafCap, 1)) {
+            Leaf leaf = new Leaf(leafMax);
+            for (int i = range[0]; i < range[1]; i++) {
+                PartRecord r = unique.get(i);
+                leaf.keys[leaf.size] = KeyCodec.encode(r.id);
+                leaf.slots[leaf.size++] = arena.allocate(r.id, r.description);
+            }
+            if (prev != null) prev.next = leaf;
+            prev = leaf;
+            level.add(leaf);
+            firstKeys.add(unique.get(range[0]).id);
+        }
+        if (level.isEmpty()) {
+            root = new Leaf(leafMax);
+            return 0;
+        }
+
+        // build internal levels until a single root remains
+        int childCap = Math.max(2, Math.min(internalMax + 1, (int) Math.round((internalMax + 1) * 0.9)));
+        while (level.size() > 1) {
+            List<Node> upper = new ArrayList<>();
+            List<String> upperKeys = new ArrayList<>();
+            for (int[] range : BPlusTree.evenGroups(level.size(), childCap, 2)) {
+                InternalNode in = new InternalNode(internalMax);
+                in.children[0] = level.get(range[0]);
+                in.children[0].parent = in;
+                for (int i = range[0] + 1; i < range[1]; i++) {
+                    in.append(firstKeys.get(i), level.get(i), 0);
+                    level.get(i).parent = in;
+                }
+                upper.add(in);
+                upperKeys.add(firstKeys.get(range[0]));
+            }
+            level = upper;
+            firstKeys = upperKeys;
+        }
+        root = level.get(0);
+        root.parent = null;
+        return count;
+    }
+
+    // reads a fixed-width part file and inserts its records; sorted files go in as appends
+    public PartFileReader.LoadStats loadFromFile(String filename) throws IOException {
+        return new PartFileReader().read(filename, this::insert);
+    }
+
+    // -------------------- UTIL / STATS --------------------
+    public int count() {
+        return count;
+    }
+
+    public int computeDepth() {
+        int depth = 1;
+        for (Node n = root; !n.isLeaf; n = ((InternalNode) n).children[0]) depth++;
+        return depth;
+    }
+
+    public int countLeaves() {
+        Node n = root;
+        while (!n.isLeaf) n = ((InternalNode) n).children[0];
+        int leaves = 0;
+        for (Leaf leaf = (Leaf) n; leaf != null; leaf = leaf.next) leaves++;
+        return leaves;
+    }
+
+    public RecordArena arena() {
+        return arena;
+    }
+
+    // checks key order within and across leaves, separator bounds and parent links;
+    // throws IllegalStateException describing the first violation
+    public void checkInvariants() {
+        check(root, null, null);
+        String prev = null;
+        int seen = 0;
+        for (Iterator<PartRecord> it = iterator(null, null); it.hasNext(); seen++) {
+            String id = it.next().id;
+            if (prev != null && prev.compareTo(id) >= 0) throw new IllegalStateException("leaf chain out of order at " + id);
+            prev = id;
+        }
+        if (seen != count) throw new IllegalStateException("count is " + count + " but the leaves hold " + seen);
+        if (arena.liveSlots() != count) throw new IllegalStateException("arena holds " + arena.liveSlots() + " records, tree " + count);
+    }
+
+    // every ID under node is in [lo, hi)
+    private void check(Node node, String lo, String hi) {
+        if (node.isLeaf) {
+            Leaf leaf = (Leaf) node;
+            for (int i = 0; i < leaf.size; i++) {
+                String id = arena.id(leaf.slots[i]);
+                if (leaf.keys[i] != KeyCodec.encode(id)) throw new IllegalStateException("stale packed key for " + id);
+                if ((lo != null && id.compareTo(lo) < 0) || (hi != null && id.compareTo(hi) >= 0)) {
+                    throw new IllegalStateException(id + " outside its separators [" + lo + ", " + hi + ")");
+                }
+            }
+            return;
+        }
+        InternalNode in = (InternalNode) node;
+        for (int i = 0; i <= in.numKeys; i++) {
+            if (in.children[i].parent != in) throw new IllegalStateException("bad parent link under " + in.key(0));
+            check(in.children[i], i == 0 ? lo : in.key(i - 1), i == in.numKeys ? hi : in.key(i));
+        }
+    }
+
+    public void printStats() {
+        System.out.println("Statistics:");
+        System.out.println(" Total splits: " + totalSplits);
+        System.out.println(" Parent splits: " + parentSplits);
+        System.out.println(" Tree depth: " + computeDepth());
+        System.out.println(" Total records: " + count);
+        System.out.println(" Leaves: " + countLeaves());
+        System.out.printf(" Arena: %d slots of %d bytes in use, %.1f MB reserved off-heap%n",
+                arena.liveSlots(), RecordArena.SLOT_BYTES, arena.reservedBytes() / 1e6);
+        if (refused > 0) System.out.println(" Refused (too long for a slot): " + refused);
+    }
+
+    // releases the arena; the tree is empty afterwards
+    @Override
+    public void close() {
+        arena.close();
+        root = new Leaf(leafMax);
+        count = 0;
+    }
+}
@@ -0,0 +1,156 @@
+package bptree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+// Decoded form of one B+ tree page of a PageFile. Leaves hold (id, description) pairs and the
+// page IDs of their siblings; internal pages hold separator keys and child page IDs.
+//
+// On-disk layout (big-endian):
+//   byte type | short count | int next | int prev | entries...
+//   leaf entry:     short idLen, id bytes, short descLen, desc bytes
+//   internal page:  int child0, then per key: short keyLen, key bytes, int child
+public class Page {
+
+    public static final byte LEAF = 0;
+    public static final byte INTERNAL = 1;
+
+    public static final int NO_PAGE = -1;
+
+    private static final int HEADER_BYTES = 1 + 2 + 4 + 4;
+
+    public final int pageId;
+    public boolean isLeaf;
+
+    // sorted keys: record IDs in a leaf, separators in an internal page
+    public ArrayList<String> keys = new ArrayList<>();
+    // leaf only: description for each key
+    public ArrayList<String> descriptions = new ArrayList<>();
+    // internal only: keys.size() + 1 child page IDs
+    public ArrayList<Integer> children = new ArrayList<>();
+    // leaf only: sibling page IDs
+    public int next = NO_PAGE;
+    public int prev = NO_PAGE;
+
+    // buffer pool bookkeeping
+    int pinCount;
+    boolean dirty;
+    boolean referenced;
+
+    public Page(int pageId, boolean isLeaf) {
+        this.pageId = pageId;
+        this.isLeaf = isLeaf;
+    }
+
+    // binary search by key: index of the key, or -(insertion point) - 1 if absent
+    public int indexOf(String key) {
+        int lo = 0, hi = keys.size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = keys.get(mid).compareTo(key);
+            if (cmp < 0) lo = mid + 1;
+            else if (cmp > 0) hi = mid - 1;
+            else return mid;
+        }
+        return -(lo + 1);
+    }
+
+    // internal only: child to follow for key (separators equal first key of right child)
+    public int childIndex(String key) {
+        int i = indexOf(key);
+        return i >= 0 ? i + 1 : -(i + 1);
+    }
+
+    // number of bytes this page needs when encoded
+    public int encodedSize() {
+        int size = HEADER_BYTES;
+        if (isLeaf) {
+            for (int i = 0; i < keys.size(); i++) {
+                size += 4 + utf8Length(keys.get(i)) + utf8Length(descriptions.get(i));
+            }
+        } else {
+            size += 4;
+            for (String k : keys) size += 2 + utf8Length(k) + 4;
+        }
+        return size;
+    }
+
+    // bytes one leaf entry adds to a page
+    static int leafEntrySize(String id, String description) {
+        return 4 + utf8Length(id) + utf8Length(description);
+    }
+
+    // bytes one separator adds to an internal page
+    static int internalEntrySize(String key) {
+        return 2 + utf8Length(key) + 4;
+    }
+
+    public void writeTo(ByteBuffer buf) {
+        buf.clear();
+        buf.put(isLeaf ? LEAF : INTERNAL);
+        buf.putShort((short) keys.size());
+        buf.putInt(next);
+        buf.putInt(prev);
+        if (isLeaf) {
+            for (int i = 0; i < keys.size(); i++) {
+                putString(buf, keys.get(i));
+                putString(buf, descriptions.get(i));
+            }
+        } else {
+            buf.putInt(children.get(0));
+            for (int i = 0; i < keys.size(); i++) {
+                putString(buf, keys.get(i));
+                buf.putInt(children.get(i + 1));
+            }
+        }
+        while (buf.hasRemaining()) buf.put((byte) 0);
+        buf.flip();
+    }
+
+    public static Page readFrom(int pageId, ByteBuffer buf) {
+        byte type = buf.get();
+        Page p = new Page(pageId, type == LEAF);
+        int count = buf.getShort() & 0xFFFF;
+        p.next = buf.getInt();
+        p.prev = buf.getInt();
+        if (p.isLeaf) {
+            for (int i = 0; i < count; i++) {
+                p.keys.add(getString(buf));
+                p.descriptions.add(getString(buf));
+            }
+        } else {
+            p.children.add(buf.getInt());
+            for (int i = 0; i < count; i++) {
+                p.keys.add(getString(buf));
+                p.children.add(buf.getInt());
+            }
+        }
+        return p;
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        buf.putShort((short) b.length);
+        buf.put(b);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getShort() & 0xFFFF;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c)) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+}
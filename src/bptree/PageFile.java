@@ -0,0 +1,92 @@
+package bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A single file of fixed-size pages accessed through a FileChannel.
+// Page 0 is the header: magic, page size, page count, root page, first leaf and record count.
+public class PageFile implements Closeable {
+
+    private static final int MAGIC = 0x42505431; // "BPT1"
+
+    public final int pageSize;
+    private final FileChannel channel;
+
+    // header fields
+    public int pageCount;
+    public int rootPage = Page.NO_PAGE;
+    public int firstLeaf = Page.NO_PAGE;
+    public long recordCount;
+
+    // counters
+    public long pageReads = 0;
+    public long pageWrites = 0;
+
+    // opens an existing page file, or creates an empty one with the given page size
+    public PageFile(Path path, int pageSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            this.pageSize = pageSize;
+            this.pageCount = 1; // header page
+            writeHeader();
+        } else {
+            ByteBuffer hdr = ByteBuffer.allocate(32);
+            channel.read(hdr, 0);
+            hdr.flip();
+            if (hdr.getInt() != MAGIC) throw new IOException("not a page file: " + path);
+            this.pageSize = hdr.getInt();
+            this.pageCount = hdr.getInt();
+            this.rootPage = hdr.getInt();
+            this.firstLeaf = hdr.getInt();
+            this.recordCount = hdr.getLong();
+        }
+    }
+
+    // reserves a new page at the end of the file
+    public int allocatePage() {
+        return pageCount++;
+    }
+
+    public Page readPage(int pageId) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(pageSize);
+        long pos = (long) pageId * pageSize;
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) throw new IOException("page " + pageId + " past end of file");
+        }
+        buf.flip();
+        pageReads++;
+        return Page.readFrom(pageId, buf);
+    }
+
+    public void writePage(Page page) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(pageSize);
+        page.writeTo(buf);
+        writeFully(buf, (long) page.pageId * pageSize);
+        pageWrites++;
+    }
+
+    public void writeHeader() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(pageSize);
+        buf.putInt(MAGIC).putInt(pageSize).putInt(pageCount).putInt(rootPage).putInt(firstLeaf).putLong(recordCount);
+        buf.position(pageSize);
+        buf.flip();
+        writeFully(buf, 0);
+    }
+
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    private void writeFully(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += channel.write(buf, pos);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
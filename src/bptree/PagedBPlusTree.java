@@ -0,0 +1,365 @@
+package bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Disk-resident variant of BPlusTree: nodes live in fixed-size pages of a PageFile and are
+// accessed through a bounded BufferPool, so the index can be larger than the heap.
+// Child and sibling links are page IDs. search/insert/update/delete/scanFrom behave like
+// the in-memory tree; nodes split when their encoded size no longer fits in a page.
+// A split pins one new page per level it reaches, so an insert or update whose split needs more
+// frames than the pool has free throws IllegalStateException before it changes any page.
+public class PagedBPlusTree implements Closeable {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int DEFAULT_POOL_PAGES = 1024;
+
+    private final PageFile file;
+    private final BufferPool pool;
+
+    // largest single entry accepted, so that any split leaves both halves within a page
+    private final int maxEntryBytes;
+
+    // Stats
+    public int totalSplits = 0;     // leaf + internal splits
+    public int parentSplits = 0;    // internal splits (parent)
+
+    public PagedBPlusTree(Path path) throws IOException {
+        this(path, DEFAULT_PAGE_SIZE, DEFAULT_POOL_PAGES);
+    }
+
+    // pageSize only applies when the file is created; an existing file keeps its own
+    public PagedBPlusTree(Path path, int pageSize, int poolPages) throws IOException {
+        this.file = new PageFile(path, pageSize);
+        this.pool = new BufferPool(file, poolPages);
+        this.maxEntryBytes = (file.pageSize - 16) / 4;
+    }
+
+    // -------------------- SEARCH --------------------
+    // find a PartRecord by ID; returns null if not found
+    public PartRecord search(String id) throws IOException {
+        if (id == null || file.rootPage == Page.NO_PAGE) return null;
+        Page leaf = findLeaf(id);
+        try {
+            int i = leaf.indexOf(id);
+            return i >= 0 ? new PartRecord(leaf.keys.get(i), leaf.descriptions.get(i)) : null;
+        } finally {
+            pool.unpin(leaf);
+        }
+    }
+
+    // -------------------- INSERT --------------------
+    // Insert a new PartRecord; return false on duplicate or error
+    public boolean insert(PartRecord rec) throws IOException {
+        if (rec == null || rec.id == null) return false;
+        String desc = rec.description == null ? "" : rec.description;
+        if (Page.leafEntrySize(rec.id, desc) > maxEntryBytes) return false;
+
+        if (file.rootPage == Page.NO_PAGE) {
+            Page leaf = pool.create(true);
+            file.rootPage = leaf.pageId;
+            file.firstLeaf = leaf.pageId;
+            pool.unpin(leaf);
+        }
+
+        Deque<Page> path = new ArrayDeque<>();
+        Deque<Integer> slots = new ArrayDeque<>();
+        try {
+            Page node = descendForWrite(rec.id, path, slots);
+
+            int pos = node.indexOf(rec.id);
+            if (pos >= 0) return false; // duplicate ID
+            pos = -(pos + 1);
+            if (node.encodedSize() + Page.leafEntrySize(rec.id, desc) > file.pageSize) reserveForSplit(path);
+            node.keys.add(pos, rec.id);
+            node.descriptions.add(pos, desc);
+            pool.markDirty(node);
+            file.recordCount++;
+
+            if (node.encodedSize() > file.pageSize) splitLeaf(node, path, slots);
+            return true;
+        } finally {
+            for (Page p : path) pool.unpin(p);
+        }
+    }
+
+    // -------------------- UPDATE --------------------
+    // update the description of an existing record; returns true on success
+    public boolean update(String id, String newDesc) throws IOException {
+        if (id == null || file.rootPage == Page.NO_PAGE) return false;
+        String desc = newDesc == null ? "" : newDesc;
+        if (Page.leafEntrySize(id, desc) > maxEntryBytes) return false;
+
+        Deque<Page> path = new ArrayDeque<>();
+        Deque<Integer> slots = new ArrayDeque<>();
+        try {
+            Page node = descendForWrite(id, path, slots);
+
+            int pos = node.indexOf(id);
+            if (pos < 0) return false;
+            int grows = Page.utf8Length(desc) - Page.utf8Length(node.descriptions.get(pos));
+            if (node.encodedSize() + grows > file.pageSize) reserveForSplit(path);
+            node.descriptions.set(pos, desc);
+            pool.markDirty(node);
+
+            // a longer description can overflow the page
+            if (node.encodedSize() > file.pageSize) splitLeaf(node, path, slots);
+            return true;
+        } finally {
+            for (Page p : path) pool.unpin(p);
+        }
+    }
+
+    // -------------------- DELETE --------------------
+    // removes the record from its leaf (no rebalancing); returns false if not found
+    public boolean delete(String id) throws IOException {
+        if (id == null || file.rootPage == Page.NO_PAGE) return false;
+        Page leaf = findLeaf(id);
+        try {
+            int pos = leaf.indexOf(id);
+            if (pos < 0) return false;
+            leaf.keys.remove(pos);
+            leaf.descriptions.remove(pos);
+            pool.markDirty(leaf);
+            file.recordCount--;
+            return true;
+        } finally {
+            pool.unpin(leaf);
+        }
+    }
+
+    // -------------------- RANGE SCAN --------------------
+    // collect 'count' records starting from startId (inclusive)
+    public List<PartRecord> scanFrom(String startId, int count) throws IOException {
+        List<PartRecord> out = new ArrayList<>();
+        if (file.rootPage == Page.NO_PAGE) return out;
+
+        Page cur = findLeaf(startId);
+        int idx = cur.indexOf(startId);
+        if (idx < 0) idx = -(idx + 1);
+        while (true) {
+            while (idx < cur.keys.size() && out.size() < count) {
+                out.add(new PartRecord(cur.keys.get(idx), cur.descriptions.get(idx)));
+                idx++;
+            }
+            int next = cur.next;
+            pool.unpin(cur);
+            if (next == Page.NO_PAGE || out.size() >= count) return out;
+            cur = pool.get(next);
+            idx = 0;
+        }
+    }
+
+    // -------------------- FIND LEAF --------------------
+    // traverse internal pages until we reach a leaf; the leaf is returned pinned
+    private Page findLeaf(String id) throws IOException {
+        Page node = pool.get(file.rootPage);
+        while (!node.isLeaf) {
+            Page child = pool.get(node.children.get(node.childIndex(id)));
+            pool.unpin(node);
+            node = child;
+        }
+        return node;
+    }
+
+    // -------------------- WRITE PATH --------------------
+    // descends to the leaf for id and returns it. Only the pages a split could change stay pinned:
+    // the leaf and its ancestors up to the lowest one with room for another separator, which
+    // stops any split below it. path holds them leaf first, slots the child index taken at each
+    // pinned parent
+    private Page descendForWrite(String id, Deque<Page> path, Deque<Integer> slots) throws IOException {
+        Page node = pool.get(file.rootPage);
+        path.push(node);
+        while (!node.isLeaf) {
+            int idx = node.childIndex(id);
+            Page child = pool.get(node.children.get(idx));
+            if (!child.isLeaf && hasRoomForSeparator(child)) {
+                for (Page p : path) pool.unpin(p);
+                path.clear();
+                slots.clear();
+            } else {
+                slots.push(idx);
+            }
+            path.push(child);
+            node = child;
+        }
+        return node;
+    }
+
+    // true if the internal page takes any promoted separator without splitting
+    private boolean hasRoomForSeparator(Page p) {
+        // a separator is a record ID, and leafEntrySize(id, desc) <= maxEntryBytes
+        return p.encodedSize() + maxEntryBytes + 2 <= file.pageSize;
+    }
+
+    // checks that the pool can pin every page the split of path's leaf may create, before any
+    // page is changed: one new page per page on path that can split, a new root if the root
+    // splits, and the leaf's right sibling whose prev link changes
+    private void reserveForSplit(Deque<Page> path) {
+        Page top = path.peekLast();
+        boolean stops = !top.isLeaf && hasRoomForSeparator(top);
+        pool.reserve(stops ? path.size() : path.size() + 2);
+    }
+
+    // -------------------- SPLIT LEAF --------------------
+    // path holds the pinned pages from leaf (top) to root; slots the child index used at each parent
+    private void splitLeaf(Page leaf, Deque<Page> path, Deque<Integer> slots) throws IOException {
+        int mid = splitPoint(leaf);
+
+        Page right = pool.create(true);
+        path.push(right); // keep it pinned until the operation ends
+        // move right half to new page
+        right.keys.addAll(leaf.keys.subList(mid, leaf.keys.size()));
+        right.descriptions.addAll(leaf.descriptions.subList(mid, leaf.descriptions.size()));
+        leaf.keys.subList(mid, leaf.keys.size()).clear();
+        leaf.descriptions.subList(mid, leaf.descriptions.size()).clear();
+
+        // link siblings (maintain leaf chain)
+        right.next = leaf.next;
+        right.prev = leaf.pageId;
+        if (leaf.next != Page.NO_PAGE) {
+            Page after = pool.get(leaf.next);
+            after.prev = right.pageId;
+            pool.markDirty(after);
+            pool.unpin(after);
+        }
+        leaf.next = right.pageId;
+
+        totalSplits++;
+        insertIntoParent(leaf, right.keys.get(0), right, path, slots);
+    }
+
+    // -------------------- INSERT INTO PARENT --------------------
+    private void insertIntoParent(Page left, String key, Page right, Deque<Page> path, Deque<Integer> slots) throws IOException {
+        if (slots.isEmpty()) {
+            // left was the root: create new root
+            Page newRoot = pool.create(false);
+            path.push(newRoot);
+            newRoot.keys.add(key);
+            newRoot.children.add(left.pageId);
+            newRoot.children.add(right.pageId);
+            file.rootPage = newRoot.pageId;
+
+            parentSplits++;
+            totalSplits++;
+            return;
+        }
+
+        int idx = slots.pop();
+        Page parent = parentOf(left, path);
+        // insert key at idx (separator) and right child at idx+1
+        parent.keys.add(idx, key);
+        parent.children.add(idx + 1, right.pageId);
+        pool.markDirty(parent);
+
+        // if parent overflows, split internal page
+        if (parent.encodedSize() > file.pageSize) splitInternal(parent, path, slots);
+    }
+
+    // -------------------- SPLIT INTERNAL --------------------
+    private void splitInternal(Page node, Deque<Page> path, Deque<Integer> slots) throws IOException {
+        int mid = splitPoint(node);
+        String promote = node.keys.get(mid);
+
+        Page right = pool.create(false);
+        path.push(right);
+        // right keys = mid+1 .. end, right children = mid+1 .. end
+        right.keys.addAll(node.keys.subList(mid + 1, node.keys.size()));
+        right.children.addAll(node.children.subList(mid + 1, node.children.size()));
+        // left keeps 0..mid-1 keys and 0..mid children
+        node.keys.subList(mid, node.keys.size()).clear();
+        node.children.subList(mid + 1, node.children.size()).clear();
+
+        parentSplits++;
+        totalSplits++;
+        insertIntoParent(node, promote, right, path, slots);
+    }
+
+    // the pinned ancestor directly above child on the descent path
+    private Page parentOf(Page child, Deque<Page> path) {
+        boolean found = false;
+        for (Page p : path) {
+            if (found && !p.isLeaf && p.children.contains(child.pageId)) return p;
+            if (p == child) found = true;
+        }
+        throw new IllegalStateException("parent of page " + child.pageId + " not on path");
+    }
+
+    // index that splits the page's entries into two halves of about equal encoded size
+    private static int splitPoint(Page p) {
+        int total = p.encodedSize();
+        int acc = 0;
+        int n = p.keys.size();
+        for (int i = 0; i < n; i++) {
+            acc += p.isLeaf ? Page.leafEntrySize(p.keys.get(i), p.descriptions.get(i)) : Page.internalEntrySize(p.keys.get(i));
+            if (acc >= total / 2) return Math.max(1, Math.min(i, n - (p.isLeaf ? 1 : 2)));
+        }
+        return n / 2;
+    }
+
+    // -------------------- I/O --------------------
+    // inserts every record of a fixed-width part file
+    public PartFileReader.LoadStats loadFromFile(String filename) throws IOException {
+        IOException[] failure = new IOException[1];
+        PartFileReader.LoadStats stats = new PartFileReader().read(filename, r -> {
+            if (failure[0] != null) return;
+            try {
+                insert(r);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        return stats;
+    }
+
+    // writes all dirty pages and the header and syncs the file
+    public void flush() throws IOException {
+        pool.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    // -------------------- UTIL / STATS --------------------
+    public long countAllRecords() {
+        return file.recordCount;
+    }
+
+    public int computeDepth() throws IOException {
+        if (file.rootPage == Page.NO_PAGE) return 0;
+        int depth = 1;
+        Page node = pool.get(file.rootPage);
+        while (!node.isLeaf) {
+            Page child = pool.get(node.children.get(0));
+            pool.unpin(node);
+            node = child;
+            depth++;
+        }
+        pool.unpin(node);
+        return depth;
+    }
+
+    public BufferPool bufferPool() {
+        return pool;
+    }
+
+    public void printStats() throws IOException {
+        System.out.println("Statistics:");
+        System.out.println(" Total splits: " + totalSplits);
+        System.out.println(" Parent splits: " + parentSplits);
+        System.out.println(" Tree depth: " + computeDepth());
+        System.out.println(" Total records: " + countAllRecords());
+        System.out.println(" Pages: " + file.pageCount + " x " + file.pageSize + " bytes");
+        System.out.printf(" Buffer pool: %d cached, %.1f%% hits, %d evictions, %d page reads, %d page writes%n",
+                pool.size(), pool.hitRate() * 100, pool.evictions, file.pageReads, file.pageWrites);
+    }
+}
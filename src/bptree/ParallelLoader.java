@@ -0,0 +1,261 @@
+package bptree;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Loads a part file on a ForkJoinPool in three phases:
+//   parse  the file is split into byte ranges; each task reads the lines starting in its range
+//   sort   the runs are concatenated in file order, then merge-sorted in parallel on packed
+//          KeyCodec keys (stable; Strings are only compared for inexact keys)
+//   dedup  for equal IDs the record that came first in the file wins, like insert()
+// The result is sorted and unique, ready for BPlusTree.bulkLoad.
+public class ParallelLoader {
+    // ranges and sort runs below these sizes are handled by a single task
+    private static final long MIN_RANGE_BYTES = 1 << 20;
+    private static final int MIN_SORT_RUN = 1 << 13;
+
+    private final int workers;
+
+    // timings and counts of the last load
+    public long parseNanos, sortNanos, dedupNanos;
+    public long bytes, parsed, unique;
+
+    public ParallelLoader(int workers) {
+        if (workers < 1) throw new IllegalArgumentException("workers must be at least 1");
+        this.workers = workers;
+    }
+
+    public List<PartRecord> load(String filename) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            bytes = ch.size();
+
+            // parse: a few ranges per worker so a slow range doesn't hold the others up
+            long t0 = System.nanoTime();
+            long rangeBytes = Math.max(MIN_RANGE_BYTES, bytes / (workers * 4L) + 1);
+            List<List<PartRecord>> runs = pool.invoke(new ParseTask(ch, 0, bytes, rangeBytes));
+            int[] offsets = new int[runs.size()];
+            int total = 0;
+            for (int i = 0; i < runs.size(); i++) {
+                offsets[i] = total;
+                total += runs.get(i).size();
+            }
+            PartRecord[] all = new PartRecord[total];
+            long[] keys = new long[total];
+            if (total > 0) pool.invoke(new ConcatTask(runs, offsets, all, keys, 0, runs.size()));
+            parsed = total;
+            parseNanos = System.nanoTime() - t0;
+
+            // sort: part files are usually sorted already, so check first
+            t0 = System.nanoTime();
+            if (!isSorted(keys, all)) pool.invoke(new SortTask(keys.clone(), all.clone(), keys, all, 0, all.length));
+            sortNanos = System.nanoTime() - t0;
+
+            // dedup: the stable sort keeps equal IDs in file order, so the first of each run wins
+            t0 = System.nanoTime();
+            int n = 0;
+            for (int i = 0; i < all.length; i++) {
+                if (n > 0 && all[n - 1].id.equals(all[i].id)) continue;
+                all[n++] = all[i];
+            }
+            unique = n;
+            dedupNanos = System.nanoTime() - t0;
+            return Arrays.asList(all).subList(0, n);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static boolean isSorted(long[] keys, PartRecord[] a) {
+        for (int i = 1; i < a.length; i++) {
+            if (KeyCodec.compare(keys[i - 1], a[i - 1].id, keys[i], a[i].id) > 0) return false;
+        }
+        return true;
+    }
+
+    // parses the lines starting in [from, to); the result lists are in file order
+    private static final class ParseTask extends RecursiveTask<List<List<PartRecord>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel ch;
+        private final long from, to, rangeBytes;
+
+        ParseTask(FileChannel ch, long from, long to, long rangeBytes) {
+            this.ch = ch;
+            this.from = from;
+            this.to = to;
+            this.rangeBytes = rangeBytes;
+        }
+
+        @Override
+        protected List<List<PartRecord>> compute() {
+            if (to - from <= rangeBytes) {
+                List<PartRecord> out = new ArrayList<>((int) ((to - from) / 64) + 16);
+                try {
+                    new PartFileReader().read(ch, from, to, out::add);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                List<List<PartRecord>> runs = new ArrayList<>();
+                runs.add(out);
+                return runs;
+            }
+            long mid = from + (to - from) / 2;
+            ParseTask right = new ParseTask(ch, mid, to, rangeBytes);
+            right.fork();
+            List<List<PartRecord>> runs = new ParseTask(ch, from, mid, rangeBytes).compute();
+            runs.addAll(right.join());
+            return runs;
+        }
+    }
+
+    // copies the parsed runs into one array in file order and packs every ID into keys
+    private static final class ConcatTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<List<PartRecord>> runs;
+        private final int[] offsets;
+        private final PartRecord[] recs;
+        private final long[] keys;
+        private final int from, to;
+
+        ConcatTask(List<List<PartRecord>> runs, int[] offsets, PartRecord[] recs, long[] keys, int from, int to) {
+            this.runs = runs;
+            this.offsets = offsets;
+            this.recs = recs;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ConcatTask(runs, offsets, recs, keys, from, mid), new ConcatTask(runs, offsets, recs, keys, mid, to));
+                return;
+            }
+            int at = offsets[from];
+            for (PartRecord r : runs.get(from)) {
+                recs[at] = r;
+                keys[at++] = KeyCodec.encode(r.id);
+            }
+        }
+    }
+
+    // stable merge sort of dst[lo, hi) (records plus their packed keys) using src as scratch;
+    // both start out with the same contents. Each level sorts its halves into src and merges them
+    // back into dst. Runs at the bottom are radix-sorted on the packed keys
+    private static final class SortTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] srcKeys, dstKeys;
+        private final PartRecord[] src, dst;
+        private final int lo, hi;
+
+        SortTask(long[] srcKeys, PartRecord[] src, long[] dstKeys, PartRecord[] dst, int lo, int hi) {
+            this.srcKeys = srcKeys;
+            this.src = src;
+            this.dstKeys = dstKeys;
+            this.dst = dst;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= MIN_SORT_RUN) {
+                // src[lo, hi) still holds the unsorted input here
+                String[] ids = new String[hi - lo];
+                for (int i = lo; i < hi; i++) ids[i - lo] = src[i].id;
+                int[] order = KeyCodec.sortedOrder(ids); // stable
+                for (int k = 0; k < order.length; k++) {
+                    dst[lo + k] = src[lo + order[k]];
+                    dstKeys[lo + k] = srcKeys[lo + order[k]];
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SortTask(dstKeys, dst, srcKeys, src, lo, mid), new SortTask(dstKeys, dst, srcKeys, src, mid, hi));
+            if (KeyCodec.compare(srcKeys[mid - 1], src[mid - 1].id, srcKeys[mid], src[mid].id) <= 0) {
+                // halves already in order
+                System.arraycopy(src, lo, dst, lo, hi - lo);
+                System.arraycopy(srcKeys, lo, dstKeys, lo, hi - lo);
+                return;
+            }
+            new MergeTask(srcKeys, src, lo, mid, mid, hi, dstKeys, dst, lo).compute();
+        }
+    }
+
+    // stable merge of src[lo1, hi1) (earlier in the file) and src[lo2, hi2) into dst from out.
+    // Large merges split around the middle of the longer run so both halves merge in parallel
+    private static final class MergeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] srcKeys, dstKeys;
+        private final PartRecord[] src, dst;
+        private final int lo1, hi1, lo2, hi2, out;
+
+        MergeTask(long[] srcKeys, PartRecord[] src, int lo1, int hi1, int lo2, int hi2, long[] dstKeys, PartRecord[] dst, int out) {
+            this.srcKeys = srcKeys;
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dstKeys = dstKeys;
+            this.dst = dst;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            int n1 = hi1 - lo1, n2 = hi2 - lo2;
+            if (n1 + n2 <= MIN_SORT_RUN) {
+                int i = lo1, j = lo2, k = out;
+                while (i < hi1 && j < hi2) {
+                    // ties go to the first run
+                    int from = KeyCodec.compare(srcKeys[j], src[j].id, srcKeys[i], src[i].id) < 0 ? j++ : i++;
+                    dstKeys[k] = srcKeys[from];
+                    dst[k++] = src[from];
+                }
+                System.arraycopy(srcKeys, i, dstKeys, k, hi1 - i);
+                System.arraycopy(src, i, dst, k, hi1 - i);
+                k += hi1 - i;
+                System.arraycopy(srcKeys, j, dstKeys, k, hi2 - j);
+                System.arraycopy(src, j, dst, k, hi2 - j);
+                return;
+            }
+            int m1, m2;
+            if (n1 >= n2) {
+                m1 = (lo1 + hi1) >>> 1;
+                m2 = bound(m1, lo2, hi2, false); // second-run records equal to the pivot go after it
+            } else {
+                m2 = (lo2 + hi2) >>> 1;
+                m1 = bound(m2, lo1, hi1, true);  // first-run records equal to the pivot go before it
+            }
+            invokeAll(new MergeTask(srcKeys, src, lo1, m1, lo2, m2, dstKeys, dst, out),
+                    new MergeTask(srcKeys, src, m1, hi1, m2, hi2, dstKeys, dst, out + (m1 - lo1) + (m2 - lo2)));
+        }
+
+        // first index in src[lo, hi) whose ID is > src[pivot] (upper) or >= src[pivot] (lower)
+        private int bound(int pivot, int lo, int hi, boolean upper) {
+            long key = srcKeys[pivot];
+            String id = src[pivot].id;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = KeyCodec.compare(srcKeys[mid], src[mid].id, key, id);
+                if (c < 0 || (upper && c == 0)) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
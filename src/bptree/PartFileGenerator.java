@@ -0,0 +1,137 @@
+package bptree;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+// Writes synthetic part files in the fixed-width partfile.txt format (ID in columns 1-7,
+// description in columns 16-80), of any size up to ID_UNIVERSE records. IDs are AAA-000 .. ZZZ-999,
+// spread evenly over that space, so the gaps between them are free for inserts. Descriptions are
+// part words ("BOLT", "RUBBER SEAL ASSY.") cut to a length drawn uniformly from [minDesc, maxDesc].
+// Lines come in ID order or shuffled; the same seed always gives the same file.
+// Usage: java bptree.PartFileGenerator <outfile> <records> [sorted|shuffled] [minDesc-maxDesc] [seed]
+public class PartFileGenerator {
+
+    // number of distinct IDs of the form AAA-000 .. ZZZ-999
+    public static final int ID_UNIVERSE = 26 * 26 * 26 * 1000;
+    public static final int DESC_WIDTH = 65;  // columns 16-80
+    private static final int DESC_START = 15; // column 16
+    private static final int LINE = 80;
+
+    // the most common words of partfile.txt
+    private static final String[] WORDS = {
+            "ASSY.", "BOLT", "COMP.", "WASHER", "COVER", "SCREW", "NUT", "PLATE", "SET", "RIB", "RUBBER",
+            "SKIN", "COLLAR", "SPRING", "BRACKET", "CAP", "CABLE", "TUBE", "O-RING", "SEAL", "TANK",
+            "CARBURETOR", "GEAR", "ALUM", "SEAT", "BEARING", "PIN", "MARK", "SWITCH", "PIPE", "OIL", "GASKET",
+            "STAY", "LEFT", "CASE", "SOCKET", "TIRE", "RING", "HOSE", "FUEL", "HOLDER", "KIT", "FLAP",
+            "SCREW-WASHER", "ARM", "SIDE", "CLIP", "CALIPER", "WINKER", "SPAR", "MUFFLER", "LABEL",
+            "BULKHEAD", "UNIT", "RIGHT", "SHEET", "COWL", "AILERON", "REAR", "WATER"
+    };
+
+    private final int minDesc;
+    private final int maxDesc;
+    private final long seed;
+
+    // descriptions of 3 to 21 characters, like most of partfile.txt
+    public PartFileGenerator(long seed) {
+        this(3, 21, seed);
+    }
+
+    public PartFileGenerator(int minDesc, int maxDesc, long seed) {
+        if (minDesc < 0 || maxDesc < minDesc || maxDesc > DESC_WIDTH) {
+            throw new IllegalArgumentException("description lengths must satisfy 0 <= min <= max <= " + DESC_WIDTH);
+        }
+        this.minDesc = minDesc;
+        this.maxDesc = maxDesc;
+        this.seed = seed;
+    }
+
+    // i-th ID in key order: three letters for i / 1000, then three digits for i % 1000
+    public static String id(int i) {
+        int prefix = i / 1000;
+        char[] c = new char[7];
+        c[2] = (char) ('A' + prefix % 26);
+        c[1] = (char) ('A' + prefix / 26 % 26);
+        c[0] = (char) ('A' + prefix / 676 % 26);
+        c[3] = '-';
+        int num = i % 1000;
+        c[4] = (char) ('0' + num / 100);
+        c[5] = (char) ('0' + num / 10 % 10);
+        c[6] = (char) ('0' + num % 10);
+        return new String(c);
+    }
+
+    // ID of record i of n, with the n IDs spread evenly over the ID universe
+    public static String spreadId(int i, int n) {
+        return id((int) ((long) i * ID_UNIVERSE / n));
+    }
+
+    // a description of minDesc..maxDesc characters (trailing blanks trimmed)
+    public String description(Random rnd) {
+        int len = minDesc + rnd.nextInt(maxDesc - minDesc + 1);
+        StringBuilder sb = new StringBuilder(len + 16);
+        while (sb.length() < len) {
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(WORDS[rnd.nextInt(WORDS.length)]);
+        }
+        sb.setLength(len);
+        return sb.toString().trim();
+    }
+
+    // writes n records and returns the number of bytes written
+    public long write(String filename, int n, boolean shuffled) throws IOException {
+        if (n < 0 || n > ID_UNIVERSE) throw new IllegalArgumentException("records must be in [0, " + ID_UNIVERSE + "]");
+        Random rnd = new Random(seed);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        if (shuffled) {
+            for (int i = n - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1);
+                int t = order[i];
+                order[i] = order[j];
+                order[j] = t;
+            }
+        }
+        byte[] line = new byte[LINE + 1];
+        line[LINE] = '\n';
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(filename)), 1 << 16)) {
+            for (int i = 0; i < n; i++) {
+                String id = spreadId(order[i], n);
+                String desc = description(rnd);
+                Arrays.fill(line, 0, LINE, (byte) ' ');
+                for (int c = 0; c < id.length(); c++) line[c] = (byte) id.charAt(c);
+                for (int c = 0; c < desc.length(); c++) line[DESC_START + c] = (byte) desc.charAt(c);
+                out.write(line);
+            }
+        }
+        return (long) n * line.length;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java bptree.PartFileGenerator <outfile> <records> [sorted|shuffled] [minDesc-maxDesc] [seed]");
+            return;
+        }
+        int n = Integer.parseInt(args[1]);
+        boolean shuffled = args.length >= 3 && args[2].equals("shuffled");
+        if (args.length >= 3 && !shuffled && !args[2].equals("sorted")) {
+            throw new IllegalArgumentException("order must be sorted or shuffled, got " + args[2]);
+        }
+        int minDesc = 3, maxDesc = 21;
+        if (args.length >= 4) {
+            String[] range = args[3].split("-");
+            minDesc = Integer.parseInt(range[0]);
+            maxDesc = Integer.parseInt(range[range.length - 1]);
+        }
+        long seed = args.length >= 5 ? Long.parseLong(args[4]) : 1;
+
+        long t0 = System.nanoTime();
+        long bytes = new PartFileGenerator(minDesc, maxDesc, seed).write(args[0], n, shuffled);
+        System.out.printf("Wrote %d %s records (%.1f MB) to %s in %d ms%n", n, shuffled ? "shuffled" : "sorted",
+                bytes / 1e6, args[0], (System.nanoTime() - t0) / 1_000_000);
+    }
+}
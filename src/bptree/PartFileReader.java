@@ -0,0 +1,188 @@
+package bptree;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Streams PartRecords out of a fixed-width part file (columns 1-7 ID, 16-80 description)
+// by memory-mapping it and slicing the columns straight out of the bytes.
+// No per-line String, regex or split array is created; only the ID and description Strings.
+// The file is UTF-8, as saveToFile writes it; columns count characters, not bytes, so a
+// multibyte character in the ID shifts the later columns. ASCII fields (nearly all of them)
+// skip the decoder.
+public class PartFileReader {
+
+    // the file is mapped in windows of this size so files larger than 2 GB work too
+    private static final int WINDOW = 64 * 1024 * 1024;
+
+    // in characters
+    private static final int ID_END = 7;      // column 7 (exclusive index)
+    private static final int DESC_START = 15; // column 16
+    private static final int DESC_WIDTH = 65; // columns 16-80
+
+    // bytes of the current line, reused for every line
+    private byte[] line = new byte[256];
+
+    // result of one read pass
+    public static class LoadStats {
+        public final long bytes;
+        public final long records;
+        public final long nanos;
+
+        LoadStats(long bytes, long records, long nanos) {
+            this.bytes = bytes;
+            this.records = records;
+            this.nanos = nanos;
+        }
+
+        public double bytesPerSec() {
+            return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+        }
+
+        public double recordsPerSec() {
+            return nanos == 0 ? 0 : records * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d records, %d bytes in %.1f ms (%.1f MB/s, %.0f records/s)",
+                    records, bytes, nanos / 1e6, bytesPerSec() / 1e6, recordsPerSec());
+        }
+    }
+
+    // reads every record of the file and hands it to sink in file order
+    public LoadStats read(String filename, Consumer<PartRecord> sink) throws IOException {
+        long start = System.nanoTime();
+        long size;
+        long records;
+        try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            size = ch.size();
+            records = read(ch, 0, size, sink);
+        }
+        return new LoadStats(size, records, System.nanoTime() - start);
+    }
+
+    // reads the lines that start in [from, to) and returns how many records they held.
+    // A line that starts before 'to' is read to its end, and a partial line at 'from' is
+    // left to the range before it, so adjacent ranges split a file without overlap or gaps.
+    public long read(FileChannel ch, long from, long to, Consumer<PartRecord> sink) throws IOException {
+        long size = ch.size();
+        long records = 0;
+        long pos = from == 0 ? 0 : nextLineStart(ch, from, size);
+        while (pos < to && pos < size) {
+            int len = (int) Math.min(WINDOW, size - pos);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            boolean lastWindow = pos + len == size;
+
+            int lineStart = 0;
+            for (int i = 0; i < len && pos + lineStart < to; i++) {
+                if (buf.get(i) == '\n') {
+                    if (emit(buf, lineStart, i, sink)) records++;
+                    lineStart = i + 1;
+                }
+            }
+            if (pos + lineStart >= to) break;
+            if (lastWindow || lineStart == 0) {
+                // final line without newline, or a single line longer than the window
+                if (lineStart < len && emit(buf, lineStart, len, sink)) records++;
+                pos += len;
+            } else {
+                // re-map starting at the incomplete line
+                pos += lineStart;
+            }
+        }
+        return records;
+    }
+
+    // position of the first line that starts at or after pos (size if there is none)
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        long at = pos - 1; // a line starts at pos if the byte before it ends a line
+        while (at < size) {
+            int len = (int) Math.min(64 * 1024, size - at);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, at, len);
+            for (int i = 0; i < len; i++) {
+                if (buf.get(i) == '\n') return at + i + 1;
+            }
+            at += len;
+        }
+        return size;
+    }
+
+    // parses buf[from, to) as one line; returns false if the line held no record
+    private boolean emit(MappedByteBuffer buf, int from, int to, Consumer<PartRecord> sink) {
+        if (to > from && buf.get(to - 1) == '\r') to--;
+        int n = to - from;
+        if (n > line.length) line = new byte[Math.max(n, line.length * 2)];
+        buf.get(from, line, 0, n);
+
+        PartRecord rec = parse(line, n);
+        if (rec == null) return false;
+        sink.accept(rec);
+        return true;
+    }
+
+    // fixed-width fast path, falling back to "ID description" for lines that don't follow the columns
+    static PartRecord parse(byte[] b, int n) {
+        // byte offsets of columns 8 and 16; the blanks between them are one byte each
+        int idEnd = charsEnd(b, 0, n, ID_END);
+        int descStart = idEnd + DESC_START - ID_END;
+        if (n >= descStart && isBlank(b, idEnd, descStart)) {
+            int idFrom = skipBlanks(b, 0, idEnd);
+            int idTo = trimEnd(b, idFrom, idEnd);
+            if (idFrom < idTo) {
+                int descEnd = charsEnd(b, descStart, n, DESC_WIDTH);
+                int descFrom = skipBlanks(b, descStart, descEnd);
+                int descTo = trimEnd(b, descFrom, descEnd);
+                return new PartRecord(text(b, idFrom, idTo), text(b, descFrom, descTo));
+            }
+        }
+
+        int idFrom = skipBlanks(b, 0, n);
+        if (idFrom == n) return null;
+        int idTo = idFrom;
+        while (idTo < n && !isSpace(b[idTo])) idTo++;
+        int descFrom = skipBlanks(b, idTo, n);
+        int descTo = trimEnd(b, descFrom, n);
+        return new PartRecord(text(b, idFrom, idTo), text(b, descFrom, descTo));
+    }
+
+    private static String text(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (b[i] < 0) return new String(b, from, to - from, StandardCharsets.UTF_8);
+        }
+        return new String(b, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+
+    // end of the first 'chars' UTF-8 characters of b[from, to): continuation bytes don't start one
+    private static int charsEnd(byte[] b, int from, int to, int chars) {
+        if (to - from <= chars) return to;
+        int i = from;
+        for (; i < to; i++) {
+            if ((b[i] & 0xC0) != 0x80 && chars-- == 0) break;
+        }
+        return i;
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static boolean isBlank(byte[] b, int from, int to) {
+        for (int i = from; i < to; i++) if (!isSpace(b[i])) return false;
+        return true;
+    }
+
+    private static int skipBlanks(byte[] b, int from, int to) {
+        while (from < to && isSpace(b[from])) from++;
+        return from;
+    }
+
+    private static int trimEnd(byte[] b, int from, int to) {
+        while (to > from && isSpace(b[to - 1])) to--;
+        return to;
+    }
+}
@@ -1,3 +1,5 @@
+package bptree;
+
 public class PartRecord {
     public String id;
     public String description;
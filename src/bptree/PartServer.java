@@ -0,0 +1,301 @@
+package bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+// Non-blocking query server for a BPlusTree on a local socket: loopback TCP ("127.0.0.1:7070")
+// or a Unix domain socket ("unix:/tmp/parts.sock"). One selector thread owns the tree and runs
+// every command itself, so the tree needs no locking.
+// Protocol: UTF-8 lines ending in '\n' (a '\r' before it is dropped), one command per line and
+// exactly one response per command:
+//   GET <id>                   -> OK <id> <description> | NF
+//   PUT <id> <description>     -> OK | DUP
+//   UPDATE <id> <description>  -> OK | NF
+//   DEL <id>                   -> OK | NF
+//   RANGE <startId> <count>    -> OK <n>, then n lines "<id> <description>"
+//   STATS                      -> OK <json>
+//   anything else              -> ERR <reason>
+// Clients may pipeline: every complete line of a read is run in order and the responses go out
+// together in one write. A connection whose responses pile up stops being read until they drain.
+public class PartServer implements Closeable {
+    private static final int MAX_LINE = 64 * 1024;
+    private static final int OUT_HIGH_WATER = 1 << 20;
+    public static final int MAX_RANGE = 10_000;
+
+    private final BPlusTree tree;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Path socketFile; // Unix domain socket to remove on close, or null
+    private volatile boolean running = true;
+
+    // counters, written by the server thread
+    private volatile long requests;
+    private volatile int connections;
+
+    public PartServer(BPlusTree tree, SocketAddress address) throws IOException {
+        this.tree = tree;
+        boolean unix = address instanceof UnixDomainSocketAddress;
+        this.server = unix ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        this.socketFile = unix ? ((UnixDomainSocketAddress) address).getPath() : null;
+        this.selector = Selector.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    // "host:port" (port 0 picks a free one) or "unix:<path>"
+    public static SocketAddress parseAddress(String address) {
+        if (address.startsWith("unix:")) return UnixDomainSocketAddress.of(address.substring(5));
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("expected host:port or unix:<path>, got " + address);
+        return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public long requests() {
+        return requests;
+    }
+
+    // runs the server on a new thread
+    public Thread start() {
+        Thread t = new Thread(this::run, "part-server");
+        t.start();
+        return t;
+    }
+
+    // serves until close(); the tree must not be used by other threads meanwhile
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        else if (key.isReadable()) read(key);
+                        else if (key.isWritable()) pump(key, (Connection) key.attachment());
+                    } catch (IOException e) {
+                        // the peer went away; drop the connection and keep serving the others
+                        drop(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) throw new IllegalStateException("server failed", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) closeQuietly(key.channel());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        server.close();
+        if (socketFile != null) Files.deleteIfExists(socketFile);
+    }
+
+    // -------------------- CONNECTIONS --------------------
+    private void accept() throws IOException {
+        SocketChannel ch = server.accept();
+        if (ch == null) return;
+        ch.configureBlocking(false);
+        ch.register(selector, SelectionKey.OP_READ, new Connection(ch));
+        connections++;
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        if (c.channel.read(c.in) < 0) c.eof = true;
+        pump(key, c);
+    }
+
+    // runs buffered commands and writes their responses until the input runs out of complete
+    // lines or the socket can't take more output
+    private void pump(SelectionKey key, Connection c) throws IOException {
+        while (true) {
+            boolean more = runCommands(c);
+            if (!c.flush()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            if (more) continue;
+            if (c.eof || c.broken) {
+                drop(key);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+    }
+
+    private void drop(SelectionKey key) {
+        key.cancel();
+        closeQuietly(key.channel());
+        connections--;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+            // nothing left to do with it
+        }
+    }
+
+    // runs every complete line in c.in; true if it stopped early because the output is full
+    private boolean runCommands(Connection c) {
+        byte[] a = c.in.array();
+        int end = c.in.position(), start = 0;
+        boolean more = false;
+        for (int i = 0; i < end; i++) {
+            if (a[i] != '\n') continue;
+            if (c.out.position() >= OUT_HIGH_WATER) {
+                more = true;
+                break;
+            }
+            int lineEnd = i > start && a[i - 1] == '\r' ? i - 1 : i;
+            execute(c, new String(a, start, lineEnd - start, StandardCharsets.UTF_8));
+            start = i + 1;
+        }
+        if (start == 0 && end == a.length) {
+            // no newline in a full buffer
+            c.append("ERR line longer than " + MAX_LINE + " bytes");
+            c.broken = true;
+            c.in.clear();
+            return false;
+        }
+        System.arraycopy(a, start, a, 0, end - start);
+        c.in.position(end - start);
+        return more;
+    }
+
+    // -------------------- COMMANDS --------------------
+    private void execute(Connection c, String line) {
+        requests++;
+        int sp = line.indexOf(' ');
+        String cmd = (sp < 0 ? line : line.substring(0, sp)).toUpperCase(Locale.ROOT);
+        String args = sp < 0 ? "" : line.substring(sp + 1);
+        switch (cmd) {
+            case "GET": {
+                String id = singleId(args);
+                if (id == null) {
+                    c.append("ERR usage: GET <id>");
+                    break;
+                }
+                PartRecord r = tree.search(id);
+                c.append(r == null ? "NF" : "OK " + format(r));
+                break;
+            }
+            case "PUT":
+            case "UPDATE": {
+                int gap = args.indexOf(' ');
+                String id = gap < 0 ? args : args.substring(0, gap);
+                String desc = gap < 0 ? "" : args.substring(gap + 1);
+                if (id.isEmpty()) {
+                    c.append("ERR usage: " + cmd + " <id> <description>");
+                    break;
+                }
+                if (cmd.equals("PUT")) c.append(tree.insert(new PartRecord(id, desc)) ? "OK" : "DUP");
+                else c.append(tree.update(id, desc) ? "OK" : "NF");
+                break;
+            }
+            case "DEL": {
+                String id = singleId(args);
+                if (id == null) c.append("ERR usage: DEL <id>");
+                else c.append(tree.delete(id) ? "OK" : "NF");
+                break;
+            }
+            case "RANGE": {
+                String[] parts = args.trim().split(" +");
+                int count;
+                try {
+                    count = parts.length == 2 ? Integer.parseInt(parts[1]) : -1;
+                } catch (NumberFormatException e) {
+                    count = -1;
+                }
+                if (count < 0 || count > MAX_RANGE) {
+                    c.append("ERR usage: RANGE <startId> <count up to " + MAX_RANGE + ">");
+                    break;
+                }
+                List<PartRecord> found = tree.scanFrom(parts[0], count);
+                c.append("OK " + found.size());
+                for (PartRecord r : found) c.append(format(r));
+                break;
+            }
+            case "STATS":
+                c.append("OK " + statsJson());
+                break;
+            default:
+                c.append(cmd.isEmpty() ? "ERR empty command" : "ERR unknown command " + cmd);
+        }
+    }
+
+    private static String singleId(String args) {
+        String id = args.trim();
+        return id.isEmpty() || id.indexOf(' ') >= 0 ? null : id;
+    }
+
+    private static String format(PartRecord r) {
+        return r.description == null ? r.id + " " : r.id + " " + r.description;
+    }
+
+    private String statsJson() {
+        TreeMetrics m = tree.getMetrics();
+        String treeJson = m != null ? m.getJson()
+                : String.format(Locale.ROOT, "{\"records\":%d,\"depth\":%d}", tree.count(), tree.computeDepth());
+        return String.format(Locale.ROOT, "{\"server\":{\"connections\":%d,\"requests\":%d},\"tree\":%s}", connections, requests, treeJson);
+    }
+
+    // -------------------- CONNECTION STATE --------------------
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(MAX_LINE); // unprocessed bytes in [0, position)
+        ByteBuffer out = ByteBuffer.allocate(16 * 1024);     // unsent responses in [0, position)
+        boolean eof;     // the client closed its side; close once everything is answered
+        boolean broken;  // protocol error; close after the error is sent
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void append(String line) {
+            byte[] b = line.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < b.length + 1) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + b.length + 1));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            out.put(b).put((byte) '\n');
+        }
+
+        // writes what the socket takes; true once nothing is left to send
+        boolean flush() throws IOException {
+            if (out.position() == 0) return true;
+            out.flip();
+            channel.write(out);
+            out.compact();
+            return out.position() == 0;
+        }
+    }
+}
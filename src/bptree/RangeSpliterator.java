@@ -0,0 +1,182 @@
+package bptree;
+
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+// Lazy scan of [lo, hi) over a tree or a Snapshot of it (null bounds are open).
+// Until the scan starts, the spliterator covers the children [from, to) of one internal node.
+// trySplit hands off the lower half of those children, or descends when only one is left, so
+// every split lands on a subtree boundary and the halves never share a leaf.
+// The scan moves between leaves through a stack of the internal nodes above the current leaf
+// rather than the leaf chain, so it only reads node contents and works on snapshot nodes whose
+// links belong to the live tree. Not safe against concurrent modification of the live tree.
+class RangeSpliterator implements Spliterator<PartRecord> {
+    private static final Comparator<PartRecord> BY_ID = Comparator.comparing(r -> r.id);
+
+    private final String lo, hi;
+    private Node node;          // subtree being covered (internal or leaf)
+    private int from, to;       // child range of node when it's internal
+    private long estimate;
+
+    // scan cursor, set once traversal starts: the internal nodes above leaf, the child taken
+    // at each level and where that level's share of children ends
+    private InternalNode[] path;
+    private int[] pos, end;
+    private int depth;
+    private LeafNode leaf;
+    private int idx;
+    private boolean done;
+
+    RangeSpliterator(Node root, String lo, String hi, long estimate) {
+        this.lo = lo;
+        this.hi = hi;
+        this.estimate = estimate;
+        setNode(root);
+    }
+
+    // covers the children of node that can hold keys in [lo, hi)
+    private void setNode(Node n) {
+        node = n;
+        if (n != null && !n.isLeaf) {
+            InternalNode in = (InternalNode) n;
+            from = lo == null ? 0 : in.childIndex(lo);
+            to = hi == null ? in.childCount() : in.childIndex(hi) + 1;
+        }
+    }
+
+    @Override
+    public Spliterator<PartRecord> trySplit() {
+        if (leaf != null || done || node == null) return null;
+        // a single child left: step down until there is something to split
+        while (!node.isLeaf && to - from == 1) {
+            setNode(((InternalNode) node).children[from]);
+        }
+        if (node.isLeaf) return null;
+
+        InternalNode in = (InternalNode) node;
+        int mid = (from + to) >>> 1;
+        long half = estimate >>> 1;
+
+        // the prefix keeps the shared lower bound; this spliterator continues from children[mid]
+        RangeSpliterator prefix = new RangeSpliterator(in, lo, hi, half);
+        prefix.from = from;
+        prefix.to = mid;
+        from = mid;
+        estimate -= half;
+        return prefix;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PartRecord> action) {
+        if (!start()) return false;
+        do {
+            if (idx < leaf.size) {
+                PartRecord r = leaf.records[idx++];
+                if (hi != null && r.id.compareTo(hi) >= 0) break;
+                action.accept(r);
+                return true;
+            }
+        } while (nextLeaf());
+        finish();
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super PartRecord> action) {
+        if (!start()) return;
+        do {
+            PartRecord[] recs = leaf.records;
+            int n = leaf.size;
+            // whole leaf below hi: no per-record bound check
+            if (hi == null || (n > 0 && recs[n - 1].id.compareTo(hi) < 0)) {
+                for (int i = idx; i < n; i++) action.accept(recs[i]);
+                continue;
+            }
+            for (int i = idx; i < n; i++) {
+                if (recs[i].id.compareTo(hi) >= 0) {
+                    finish();
+                    return;
+                }
+                action.accept(recs[i]);
+            }
+        } while (nextLeaf());
+        finish();
+    }
+
+    // positions the cursor on the first record >= lo; false if there is nothing to scan
+    private boolean start() {
+        if (done) return false;
+        if (leaf != null) return true;
+        if (node == null || (!node.isLeaf && from >= to)) {
+            finish();
+            return false;
+        }
+        int levels = 0;
+        for (Node n = node; !n.isLeaf; n = ((InternalNode) n).children[0]) levels++;
+        path = new InternalNode[levels];
+        pos = new int[levels];
+        end = new int[levels];
+
+        Node n = node;
+        if (!n.isLeaf) {
+            path[0] = (InternalNode) n;
+            pos[0] = from;
+            end[0] = to;
+            depth = 1;
+            n = path[0].children[from];
+        }
+        while (!n.isLeaf) {
+            InternalNode in = (InternalNode) n;
+            int i = lo == null ? 0 : in.childIndex(lo);
+            path[depth] = in;
+            pos[depth] = i;
+            end[depth] = in.childCount();
+            depth++;
+            n = in.children[i];
+        }
+        leaf = (LeafNode) n;
+        idx = lo == null ? 0 : leaf.lowerBound(lo);
+        return true;
+    }
+
+    // moves the cursor to the start of the next leaf in this share; false at the end
+    private boolean nextLeaf() {
+        int d = depth - 1;
+        while (d >= 0 && pos[d] + 1 >= end[d]) d--;
+        if (d < 0) return false;
+        pos[d]++;
+        Node n = path[d].children[pos[d]];
+        for (int k = d + 1; k < depth; k++) {
+            InternalNode in = (InternalNode) n;
+            path[k] = in;
+            pos[k] = 0;
+            end[k] = in.childCount();
+            n = in.children[0];
+        }
+        leaf = (LeafNode) n;
+        idx = 0;
+        return true;
+    }
+
+    private void finish() {
+        leaf = null;
+        path = null;
+        done = true;
+    }
+
+    @Override
+    public long estimateSize() {
+        return estimate;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SORTED | DISTINCT | NONNULL;
+    }
+
+    @Override
+    public Comparator<? super PartRecord> getComparator() {
+        return BY_ID;
+    }
+}
@@ -0,0 +1,143 @@
+package bptree;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Off-heap store of part records in fixed-width slots, carved out of direct ByteBuffer chunks
+// that the arena owns. A record is addressed by its slot number; freed slots are reused.
+// Slot layout (SLOT_BYTES): [ID length][ID, up to ID_BYTES][description length][description,
+// up to DESC_BYTES], both as UTF-8. The heap only holds the chunk buffers, not one object per
+// record. Java 17 can't free a direct buffer on demand: close() drops the chunks and the
+// memory goes back once the buffers are collected. Not thread-safe.
+public class RecordArena implements Closeable {
+    public static final int ID_BYTES = 15;
+    public static final int DESC_BYTES = 79;
+    public static final int SLOT_BYTES = 1 + ID_BYTES + 1 + DESC_BYTES; // 96
+
+    private static final int CHUNK_SHIFT = 16; // 65536 slots (6 MB) per chunk
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int DESC_AT = 1 + ID_BYTES;
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private int nextSlot = 0;                // slots below this were handed out at some point
+    private int[] free = new int[64];        // stack of freed slots
+    private int freeCount = 0;
+    private final byte[] scratch = new byte[Math.max(ID_BYTES, DESC_BYTES) * 3];
+
+    // true if the record fits a slot
+    public static boolean fits(String id, String description) {
+        return encodedLength(id) <= ID_BYTES && encodedLength(description == null ? "" : description) <= DESC_BYTES;
+    }
+
+    // stores a record and returns its slot, or -1 if it doesn't fit
+    public int allocate(String id, String description) {
+        if (!fits(id, description)) return -1;
+        int slot;
+        if (freeCount > 0) {
+            slot = free[--freeCount];
+        } else {
+            if (nextSlot >>> CHUNK_SHIFT == chunks.size()) chunks.add(ByteBuffer.allocateDirect(CHUNK_SLOTS * SLOT_BYTES));
+            slot = nextSlot++;
+        }
+        ByteBuffer chunk = chunk(slot);
+        int at = offset(slot);
+        chunk.put(at, (byte) write(chunk, at + 1, id));
+        chunk.put(at + DESC_AT, (byte) write(chunk, at + DESC_AT + 1, description == null ? "" : description));
+        return slot;
+    }
+
+    // replaces the description; false if it doesn't fit
+    public boolean setDescription(int slot, String description) {
+        String desc = description == null ? "" : description;
+        if (encodedLength(desc) > DESC_BYTES) return false;
+        ByteBuffer chunk = chunk(slot);
+        int at = offset(slot) + DESC_AT;
+        chunk.put(at, (byte) write(chunk, at + 1, desc));
+        return true;
+    }
+
+    public void free(int slot) {
+        if (freeCount == free.length) free = Arrays.copyOf(free, free.length * 2);
+        free[freeCount++] = slot;
+    }
+
+    // -------------------- READS --------------------
+    public String id(int slot) {
+        return read(chunk(slot), offset(slot));
+    }
+
+    public String description(int slot) {
+        return read(chunk(slot), offset(slot) + DESC_AT);
+    }
+
+    // a new PartRecord holding copies of the slot's fields
+    public PartRecord record(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int at = offset(slot);
+        return new PartRecord(read(chunk, at), read(chunk, at + DESC_AT));
+    }
+
+    // description length in bytes, read without creating a String
+    public int descriptionBytes(int slot) {
+        return chunk(slot).get(offset(slot) + DESC_AT) & 0xFF;
+    }
+
+    // -------------------- STATS --------------------
+    public int liveSlots() {
+        return nextSlot - freeCount;
+    }
+
+    // off-heap bytes held by the chunks
+    public long reservedBytes() {
+        return (long) chunks.size() * CHUNK_SLOTS * SLOT_BYTES;
+    }
+
+    // drops the chunks; slots read after this fail
+    @Override
+    public void close() {
+        chunks.clear();
+        nextSlot = 0;
+        freeCount = 0;
+    }
+
+    // -------------------- ENCODING --------------------
+    private ByteBuffer chunk(int slot) {
+        return chunks.get(slot >>> CHUNK_SHIFT);
+    }
+
+    private static int offset(int slot) {
+        return (slot & (CHUNK_SLOTS - 1)) * SLOT_BYTES;
+    }
+
+    // UTF-8 length of s
+    private static int encodedLength(String s) {
+        int n = s.length();
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) >= 0x80) return s.getBytes(StandardCharsets.UTF_8).length;
+        return n;
+    }
+
+    // writes s as UTF-8 at 'at' and returns the byte count; ASCII goes straight in
+    private static int write(ByteBuffer chunk, int at, String s) {
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                byte[] b = s.getBytes(StandardCharsets.UTF_8);
+                chunk.put(at, b, 0, b.length);
+                return b.length;
+            }
+            chunk.put(at + i, (byte) c);
+        }
+        return n;
+    }
+
+    private String read(ByteBuffer chunk, int at) {
+        int len = chunk.get(at) & 0xFF;
+        chunk.get(at + 1, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,236 @@
+package bptree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+// Splits the ID space into key-range shards, each a plain BPlusTree behind its own StampedLock,
+// so writers to different ranges never touch the same root. Shard i holds the IDs in
+// [bounds[i-1], bounds[i]); the first and last shards are open-ended.
+// Point operations lock one shard; lookups share its read lock and use BPlusTree.lookup, which
+// writes nothing, so concurrent readers of a shard never race each other. Scans visit the shards left to right, read-locking one shard
+// at a time, so a scan is consistent within each shard but not across them.
+public class ShardedPartIndex {
+    private final String[] bounds;   // shardCount - 1 ascending split points
+    private final long[] boundKeys;  // bounds packed with KeyCodec
+    private final BPlusTree[] shards;
+    private final StampedLock[] locks;
+
+    public ShardedPartIndex(String[] bounds) {
+        this(bounds, BPlusTree.DEFAULT_ORDER);
+    }
+
+    public ShardedPartIndex(String[] bounds, int order) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i - 1].compareTo(bounds[i]) >= 0) throw new IllegalArgumentException("shard bounds must be ascending");
+        }
+        this.bounds = bounds.clone();
+        this.boundKeys = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) boundKeys[i] = KeyCodec.encode(bounds[i]);
+        this.shards = new BPlusTree[bounds.length + 1];
+        this.locks = new StampedLock[bounds.length + 1];
+        for (int i = 0; i < shards.length; i++) {
+            shards[i] = new BPlusTree(order);
+            locks[i] = new StampedLock();
+        }
+    }
+
+    // loads a part file with the ParallelLoader and splits it into shardCount shards of about
+    // equal size; bounds snap to the three-letter prefix where the data allows it
+    public static ShardedPartIndex loadFromFile(String filename, int shardCount, int workers) throws IOException {
+        return fromSorted(new ParallelLoader(workers).load(filename), shardCount, BPlusTree.DEFAULT_ORDER);
+    }
+
+    // builds from records sorted by ID with no duplicates (the output of ParallelLoader)
+    public static ShardedPartIndex fromSorted(List<PartRecord> sorted, int shardCount, int order) {
+        int step = Math.max(1, sorted.size() / (shardCount * 64));
+        List<String> sample = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += step) sample.add(sorted.get(i).id);
+        ShardedPartIndex index = new ShardedPartIndex(chooseBounds(sample, shardCount), order);
+
+        int from = 0;
+        for (int s = 0; s < index.shards.length; s++) {
+            int to = s == index.bounds.length ? sorted.size() : lowerBound(sorted, from, index.bounds[s]);
+            index.shards[s].bulkLoad(sorted.subList(from, to));
+            from = to;
+        }
+        return index;
+    }
+
+    // split points that cut a sample of IDs into shardCount parts of about equal size.
+    // A split point is cut back to its prefix ("ABC-") when that still separates the parts,
+    // so a whole prefix family usually lands in one shard. Duplicate points are dropped, so a
+    // small or skewed sample can give fewer shards than asked for.
+    public static String[] chooseBounds(Collection<String> sample, int shardCount) {
+        if (shardCount < 1) throw new IllegalArgumentException("shardCount must be at least 1");
+        String[] keys = sample.toArray(new String[0]);
+        Arrays.sort(keys);
+        List<String> out = new ArrayList<>();
+        for (int s = 1; s < shardCount && keys.length > 0; s++) {
+            int at = (int) ((long) s * keys.length / shardCount);
+            if (at == 0) continue;
+            String bound = keys[at];
+            int dash = bound.indexOf('-');
+            if (dash > 0) {
+                String prefix = bound.substring(0, dash + 1);
+                if (prefix.compareTo(keys[at - 1]) > 0) bound = prefix;
+            }
+            if (out.isEmpty() || out.get(out.size() - 1).compareTo(bound) < 0) out.add(bound);
+        }
+        return out.toArray(new String[0]);
+    }
+
+    private static int lowerBound(List<PartRecord> sorted, int from, String id) {
+        int lo = from, hi = sorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted.get(mid).id.compareTo(id) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // -------------------- ROUTING --------------------
+    // shard whose range holds id: the number of bounds <= id
+    public int shardFor(String id) {
+        long key = KeyCodec.encode(id);
+        int lo = 0, hi = boundKeys.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (KeyCodec.compare(key, id, boundKeys[mid], bounds[mid]) >= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    public String[] getBounds() {
+        return bounds.clone();
+    }
+
+    // -------------------- POINT OPERATIONS --------------------
+    public PartRecord search(String id) {
+        if (id == null) return null;
+        int s = shardFor(id);
+        long stamp = locks[s].readLock();
+        try {
+            return shards[s].lookup(id);
+        } finally {
+            locks[s].unlockRead(stamp);
+        }
+    }
+
+    public boolean insert(PartRecord rec) {
+        if (rec == null || rec.id == null) return false;
+        int s = shardFor(rec.id);
+        long stamp = locks[s].writeLock();
+        try {
+            return shards[s].insert(rec);
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    public boolean update(String id, String newDesc) {
+        if (id == null) return false;
+        int s = shardFor(id);
+        long stamp = locks[s].writeLock();
+        try {
+            return shards[s].update(id, newDesc);
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    public boolean delete(String id) {
+        if (id == null) return false;
+        int s = shardFor(id);
+        long stamp = locks[s].writeLock();
+        try {
+            return shards[s].delete(id);
+        } finally {
+            locks[s].unlockWrite(stamp);
+        }
+    }
+
+    // -------------------- SCANS --------------------
+    // up to count records starting from startId (inclusive), continuing into later shards
+    public List<PartRecord> scanFrom(String startId, int count) {
+        List<PartRecord> out = new ArrayList<>();
+        String from = startId;
+        for (int s = startId == null ? 0 : shardFor(startId); s < shards.length && out.size() < count; s++) {
+            long stamp = locks[s].readLock();
+            try {
+                shards[s].range(from, null).limit(count - out.size()).forEach(out::add);
+            } finally {
+                locks[s].unlockRead(stamp);
+            }
+            from = null; // later shards are read from their start
+        }
+        return out;
+    }
+
+    // records with lo <= id < hi in ID order; null bounds are open
+    public List<PartRecord> range(String lo, String hi) {
+        List<PartRecord> out = new ArrayList<>();
+        int last = hi == null ? shards.length - 1 : shardFor(hi);
+        for (int s = lo == null ? 0 : shardFor(lo); s <= last; s++) {
+            long stamp = locks[s].readLock();
+            try {
+                shards[s].range(lo, hi).forEach(out::add);
+            } finally {
+                locks[s].unlockRead(stamp);
+            }
+        }
+        return out;
+    }
+
+    // -------------------- STATS --------------------
+    public int count() {
+        int total = 0;
+        for (int s = 0; s < shards.length; s++) total += shardSize(s);
+        return total;
+    }
+
+    public int shardSize(int s) {
+        long stamp = locks[s].readLock();
+        try {
+            return shards[s].count();
+        } finally {
+            locks[s].unlockRead(stamp);
+        }
+    }
+
+    // checks every shard's invariants and that each shard only holds IDs of its own range
+    public void checkInvariants() {
+        for (int s = 0; s < shards.length; s++) {
+            long stamp = locks[s].readLock();
+            try {
+                shards[s].checkInvariants();
+                String lo = s == 0 ? null : bounds[s - 1];
+                String hi = s == bounds.length ? null : bounds[s];
+                int inRange = shards[s].countRange(lo, hi);
+                if (inRange != shards[s].count()) {
+                    throw new IllegalStateException("shard " + s + " holds " + (shards[s].count() - inRange) + " IDs outside its range");
+                }
+            } finally {
+                locks[s].unlockRead(stamp);
+            }
+        }
+    }
+
+    public void printStats() {
+        System.out.println("Shards: " + shards.length);
+        for (int s = 0; s < shards.length; s++) {
+            String lo = s == 0 ? "-" : bounds[s - 1];
+            String hi = s == bounds.length ? "-" : bounds[s];
+            System.out.printf("  %2d [%s, %s): %d records, depth %d%n", s, lo, hi, shardSize(s), shards[s].computeDepth());
+        }
+    }
+}
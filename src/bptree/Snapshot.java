@@ -0,0 +1,89 @@
+package bptree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Read-only view of a BPlusTree as of BPlusTree.snapshot(). The tree copies every node it is
+// about to change while the snapshot is open, so the nodes reachable from root never change
+// and the snapshot can be scanned or saved on another thread while the tree keeps taking
+// writes. Every node the snapshot shares with the tree stays reachable until close(); after
+// that the tree changes nodes in place again and the snapshot must not be read.
+public class Snapshot implements AutoCloseable {
+    private final BPlusTree tree;
+    private final Node root; // final, so a reader thread sees the nodes as they were at creation
+    private final int count;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    Snapshot(BPlusTree tree, Node root, int count) {
+        this.tree = tree;
+        this.root = root;
+        this.count = count;
+    }
+
+    // find a PartRecord by ID as of the snapshot; returns null if not found
+    public PartRecord search(String id) {
+        checkOpen();
+        if (id == null) return null;
+        Node node = root;
+        while (!node.isLeaf) {
+            InternalNode in = (InternalNode) node;
+            node = in.children[in.childIndex(id)];
+        }
+        return ((LeafNode) node).getRecord(id);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    // lazy ascending scan of [lo, hi); null bounds are open
+    public Stream<PartRecord> range(String lo, String hi) {
+        return StreamSupport.stream(spliterator(lo, hi), false);
+    }
+
+    public Iterator<PartRecord> iterator(String lo, String hi) {
+        return Spliterators.iterator(spliterator(lo, hi));
+    }
+
+    public Spliterator<PartRecord> spliterator(String lo, String hi) {
+        checkOpen();
+        return new RangeSpliterator(root, lo, hi, count);
+    }
+
+    // collect 'count' records starting from startId (inclusive)
+    public List<PartRecord> scanFrom(String startId, int count) {
+        return range(startId, null).limit(count).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // same fixed-width format as BPlusTree.saveToFile
+    public void saveToFile(String filename) throws IOException {
+        BPlusTree.writePartFile(iterator(null, null), filename);
+    }
+
+    // same format as BPlusTree.saveSnapshot
+    public PartFileReader.LoadStats saveSnapshot(String filename, boolean compress) throws IOException {
+        return BinarySnapshot.write(iterator(null, null), filename, compress);
+    }
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+    // lets the tree change shared nodes in place again; closing twice is harmless
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) tree.releaseSnapshot();
+    }
+
+    private void checkOpen() {
+        if (closed.get()) throw new IllegalStateException("snapshot is closed");
+    }
+}
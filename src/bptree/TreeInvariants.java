@@ -0,0 +1,86 @@
+package bptree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Structural checks shared by BPlusTree and ConcurrentBPlusTree. Each violation is reported as an
+// IllegalStateException; callers are expected to run this while the tree is quiescent.
+final class TreeInvariants {
+
+    private final int leafMax, internalMax, leafMin, internalMin;
+    private final boolean strict;
+    private final Node root;
+    private final List<LeafNode> leaves = new ArrayList<>();
+    private int leafDepth = -1;
+
+    private TreeInvariants(Node root, int leafMax, int internalMax, int leafMin, int internalMin, boolean strict) {
+        this.root = root;
+        this.leafMax = leafMax;
+        this.internalMax = internalMax;
+        this.leafMin = leafMin;
+        this.internalMin = internalMin;
+        this.strict = strict;
+    }
+
+    // checks key order, separator bounds, max occupancy, uniform leaf depth and the leaf chain.
+    // strict also checks minimum occupancy of non-root nodes, parent pointers and subtree counts.
+    static void check(Node root, int leafMax, int internalMax, int leafMin, int internalMin, boolean strict) {
+        TreeInvariants t = new TreeInvariants(root, leafMax, internalMax, leafMin, internalMin, strict);
+        t.checkNode(root, null, null, 1);
+        t.checkChain();
+    }
+
+    // returns the number of records under node
+    private int checkNode(Node node, String lo, String hi, int depth) {
+        if (strict && node == root && node.parent != null) fail("root has a parent");
+        if (node.isLeaf) {
+            LeafNode leaf = (LeafNode) node;
+            if (leafDepth < 0) leafDepth = depth;
+            else if (leafDepth != depth) fail("leaves at depths " + leafDepth + " and " + depth);
+            if (leaf.size > leafMax) fail("leaf with " + leaf.size + " records");
+            if (strict && node != root && leaf.size < leafMin) fail("underfull leaf with " + leaf.size + " records");
+            for (int i = 0; i < leaf.size; i++) {
+                String id = leaf.records[i].id;
+                if (i > 0 && leaf.records[i - 1].id.compareTo(id) >= 0) fail("leaf out of order at " + id);
+                if ((lo != null && id.compareTo(lo) < 0) || (hi != null && id.compareTo(hi) >= 0)) {
+                    fail("record " + id + " outside separator range [" + lo + ", " + hi + ")");
+                }
+                if (leaf.keys != null && leaf.keys[i] != KeyCodec.encode(id)) fail("stale packed key for " + id);
+            }
+            leaves.add(leaf);
+            return leaf.size;
+        }
+
+        InternalNode in = (InternalNode) node;
+        if (in.numKeys < 1 || in.numKeys > internalMax) fail("internal node with " + in.numKeys + " keys");
+        if (strict && node != root && in.numKeys < internalMin) fail("underfull internal node with " + in.numKeys + " keys");
+        for (int i = 0; i < in.numKeys; i++) {
+            if (i > 0 && in.key(i - 1).compareTo(in.key(i)) >= 0) fail("separators out of order at " + in.key(i));
+            if (in.packed != null && in.packed[i] != KeyCodec.encode(in.key(i))) fail("stale packed separator " + in.key(i));
+        }
+        int total = 0;
+        for (int i = 0; i <= in.numKeys; i++) {
+            Node child = in.children[i];
+            String childLo = i == 0 ? lo : in.key(i - 1);
+            if (strict && child.parent != in) fail("wrong parent pointer below separator " + childLo);
+            int n = checkNode(child, childLo, i == in.numKeys ? hi : in.key(i), depth + 1);
+            if (strict && in.counts[i] != n) fail("subtree count " + in.counts[i] + " below separator " + childLo + " holds " + n);
+            total += n;
+        }
+        return total;
+    }
+
+    private void checkChain() {
+        if (leaves.get(0).prev != null) fail("first leaf has a prev link");
+        for (int i = 0; i < leaves.size(); i++) {
+            LeafNode l = leaves.get(i);
+            LeafNode expectedNext = i + 1 < leaves.size() ? leaves.get(i + 1) : null;
+            if (l.next != expectedNext) fail("broken next link at leaf " + i);
+            if (expectedNext != null && expectedNext.prev != l) fail("broken prev link at leaf " + (i + 1));
+        }
+    }
+
+    private static void fail(String message) {
+        throw new IllegalStateException(message);
+    }
+}
@@ -0,0 +1,301 @@
+package bptree;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Operation and structure metrics of one BPlusTree (see BPlusTree.enableMetrics).
+// Every instrumented call records its latency in a LatencyHistogram, and every descent records
+// how many nodes it visited. About once a second the tree thread also samples the structure
+// (records, depth, leaves, average fill) and the split/fusion counters; the last minute of samples
+// gives the split and fusion rates. These samples cost O(depth): the tree keeps its leaf count.
+// The leaf fill bands need a walk of the leaf chain, so they are only scanned when the tree
+// thread calls refresh(); no operation ever pays for the walk. The JMX bean and the dumps only
+// read these numbers, so they never walk the tree from another thread; readers see slightly
+// stale values. reset() from a reader likewise only raises a flag; the tree thread clears the
+// histograms and descent counts at its next recorded operation or refresh().
+// Started with -Dbptree.metrics=off, ENABLED is a constant false: enableMetrics() does nothing
+// and the JIT drops the instrumentation from the hot paths.
+public class TreeMetrics implements TreeMetricsMXBean {
+    public static final boolean ENABLED = !"off".equalsIgnoreCase(System.getProperty("bptree.metrics"));
+
+    public enum Op { SEARCH, INSERT, UPDATE, DELETE, SCAN, LOAD, SAVE }
+
+    private static final long SAMPLE_NANOS = 1_000_000_000L;
+    private static final int SAMPLES = 60;
+    private static final int FILL_BANDS = 10;
+
+    private final BPlusTree tree;
+    private final LatencyHistogram[] latency = new LatencyHistogram[Op.values().length];
+    private final long[] descents = new long[64]; // descents by nodes visited
+    private long descentCount, descentNodes;
+    private volatile boolean resetRequested;
+
+    // structure sample, refreshed by the tree thread
+    private volatile long sampledAtMillis;
+    private long lastSampleNanos;
+    private long records, leaves;
+    private int depth;
+    private double averageFill;
+
+    // leaf fill bands, refreshed by the tree thread in refresh()
+    private volatile long leafScanAtMillis;
+    private long[] fillBands = new long[FILL_BANDS];
+
+    // ring of per-sample split/fusion deltas with the sample times
+    private final long[] sampleMillis = new long[SAMPLES];
+    private final long[] splitDeltas = new long[SAMPLES];
+    private final long[] fusionDeltas = new long[SAMPLES];
+    private int sampleCount;
+    private long lastSplits, lastFusions;
+
+    TreeMetrics(BPlusTree tree) {
+        this.tree = tree;
+        for (int i = 0; i < latency.length; i++) latency[i] = new LatencyHistogram();
+        lastSplits = tree.totalSplits;
+        lastFusions = tree.totalFusions;
+        refresh();
+    }
+
+    // -------------------- RECORDING (tree thread) --------------------
+    // records an operation that started at System.nanoTime() == start
+    void record(Op op, long start) {
+        long now = System.nanoTime();
+        if (resetRequested) clear();
+        latency[op.ordinal()].record(now - start);
+        // a load replaces the whole tree, so sample right away
+        if (now - lastSampleNanos >= SAMPLE_NANOS || op == Op.LOAD) sample(now);
+    }
+
+    void descent(int nodes) {
+        descents[Math.min(nodes, descents.length - 1)]++;
+        descentCount++;
+        descentNodes += nodes;
+    }
+
+    // samples the structure and scans the leaf fill bands now; call it from the thread that
+    // uses the tree
+    public void refresh() {
+        if (resetRequested) clear();
+        scanLeaves();
+        sample(System.nanoTime());
+    }
+
+    // walks the leaf chain, O(leaves)
+    private void scanLeaves() {
+        long[] bands = new long[FILL_BANDS];
+        Node n = tree.getRoot();
+        while (!n.isLeaf) n = ((InternalNode) n).children[0];
+        for (LeafNode leaf = (LeafNode) n; leaf != null; leaf = leaf.next) {
+            bands[Math.min(FILL_BANDS - 1, leaf.size * FILL_BANDS / tree.LEAF_MAX)]++;
+        }
+        fillBands = bands;
+        leafScanAtMillis = System.currentTimeMillis();
+    }
+
+    // O(depth): the record and leaf counts are kept by the tree
+    private void sample(long now) {
+        records = tree.count();
+        depth = tree.computeDepth();
+        leaves = tree.leafCount;
+        averageFill = leaves == 0 ? 0 : records / (double) (leaves * tree.LEAF_MAX);
+
+        int slot = sampleCount++ % SAMPLES;
+        sampleMillis[slot] = System.currentTimeMillis();
+        splitDeltas[slot] = tree.totalSplits - lastSplits;
+        fusionDeltas[slot] = tree.totalFusions - lastFusions;
+        lastSplits = tree.totalSplits;
+        lastFusions = tree.totalFusions;
+        lastSampleNanos = now;
+        sampledAtMillis = sampleMillis[slot];
+    }
+
+    // -------------------- JMX --------------------
+    // registers this object with the platform MBean server as bptree:type=TreeMetrics,name=<name>
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("bptree:type=TreeMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> out = new LinkedHashMap<>();
+        for (Op op : Op.values()) out.put(name(op), latency[op.ordinal()].count());
+        return out;
+    }
+
+    @Override
+    public Map<String, Double> getLatencyMicros() {
+        Map<String, Double> out = new LinkedHashMap<>();
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latency[op.ordinal()];
+            out.put(name(op) + ".p50", h.percentile(50) / 1e3);
+            out.put(name(op) + ".p99", h.percentile(99) / 1e3);
+            out.put(name(op) + ".p999", h.percentile(99.9) / 1e3);
+            out.put(name(op) + ".max", h.max() / 1e3);
+            out.put(name(op) + ".mean", h.mean() / 1e3);
+        }
+        return out;
+    }
+
+    public LatencyHistogram latency(Op op) {
+        return latency[op.ordinal()];
+    }
+
+    @Override
+    public double getAverageNodesPerDescent() {
+        return descentCount == 0 ? 0 : descentNodes / (double) descentCount;
+    }
+
+    @Override
+    public long getRecords() {
+        return records;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int getLeaves() {
+        return (int) leaves;
+    }
+
+    @Override
+    public double getAverageLeafFill() {
+        return averageFill;
+    }
+
+    @Override
+    public long[] getLeafFillDistribution() {
+        return fillBands.clone();
+    }
+
+    @Override
+    public long getStructureSampledAtMillis() {
+        return sampledAtMillis;
+    }
+
+    @Override
+    public long getLeafScanAtMillis() {
+        return leafScanAtMillis;
+    }
+
+    @Override
+    public long getSplits() {
+        return tree.totalSplits;
+    }
+
+    @Override
+    public long getFusions() {
+        return tree.totalFusions;
+    }
+
+    @Override
+    public double getSplitsPerSecond() {
+        return perSecond(splitDeltas);
+    }
+
+    @Override
+    public double getFusionsPerSecond() {
+        return perSecond(fusionDeltas);
+    }
+
+    // sum of the deltas sampled in the last minute over the time they cover
+    private double perSecond(long[] deltas) {
+        long now = System.currentTimeMillis(), oldest = now, sum = 0;
+        for (int i = 0; i < Math.min(sampleCount, SAMPLES); i++) {
+            if (now - sampleMillis[i] > SAMPLES * 1000L) continue;
+            sum += deltas[i];
+            oldest = Math.min(oldest, sampleMillis[i]);
+        }
+        // the oldest delta covers roughly the second before its sample
+        double seconds = Math.max(1.0, (now - oldest) / 1e3 + 1);
+        return sum / seconds;
+    }
+
+    // has the tree thread clear the latencies and descents, which only it writes
+    @Override
+    public void reset() {
+        resetRequested = true;
+    }
+
+    private void clear() {
+        resetRequested = false;
+        for (LatencyHistogram h : latency) h.reset();
+        Arrays.fill(descents, 0);
+        descentCount = 0;
+        descentNodes = 0;
+    }
+
+    // -------------------- DUMPS --------------------
+    @Override
+    public String getText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-7s %10s %10s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p999 us", "max us", "mean us"));
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latency[op.ordinal()];
+            if (h.count() == 0) continue;
+            sb.append(String.format(Locale.ROOT, "%-7s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name(op), h.count(),
+                    h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3, h.mean() / 1e3));
+        }
+        sb.append(String.format(Locale.ROOT, "descents %d, %.2f nodes each%n", descentCount, getAverageNodesPerDescent()));
+        sb.append(String.format(Locale.ROOT, "records %d, depth %d, leaves %d, average leaf fill %.1f%%%n",
+                records, depth, leaves, averageFill * 100));
+        sb.append("leaf fill bands (0-10% .. 90-100%):");
+        for (long b : fillBands) sb.append(' ').append(b);
+        sb.append(String.format(Locale.ROOT, " (scanned %.1f s ago)", (System.currentTimeMillis() - leafScanAtMillis) / 1e3));
+        sb.append(String.format(Locale.ROOT, "%nsplits %d (%.2f/s), fusions %d (%.2f/s) over the last minute%n",
+                getSplits(), getSplitsPerSecond(), getFusions(), getFusionsPerSecond()));
+        return sb.toString();
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder sb = new StringBuilder("{\"operations\":{");
+        boolean first = true;
+        for (Op op : Op.values()) {
+            LatencyHistogram h = latency[op.ordinal()];
+            if (!first) sb.append(',');
+            first = false;
+            sb.append(String.format(Locale.ROOT, "\"%s\":{\"count\":%d,\"p50Micros\":%.3f,\"p99Micros\":%.3f,\"p999Micros\":%.3f,\"maxMicros\":%.3f,\"meanMicros\":%.3f}",
+                    name(op), h.count(), h.percentile(50) / 1e3, h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3, h.mean() / 1e3));
+        }
+        sb.append(String.format(Locale.ROOT, "},\"descents\":{\"count\":%d,\"averageNodes\":%.3f,\"byNodes\":", descentCount, getAverageNodesPerDescent()));
+        int last = descents.length - 1;
+        while (last > 0 && descents[last] == 0) last--;
+        appendArray(sb, descents, 0, last + 1);
+        sb.append(String.format(Locale.ROOT, "},\"structure\":{\"sampledAtMillis\":%d,\"records\":%d,\"depth\":%d,\"leaves\":%d,\"averageLeafFill\":%.4f,\"leafScanAtMillis\":%d,\"leafFillBands\":",
+                sampledAtMillis, records, depth, leaves, averageFill, leafScanAtMillis));
+        appendArray(sb, fillBands, 0, fillBands.length);
+        sb.append(String.format(Locale.ROOT, "},\"splits\":%d,\"fusions\":%d,\"splitsPerSecond\":%.3f,\"fusionsPerSecond\":%.3f,\"timeline\":[",
+                getSplits(), getFusions(), getSplitsPerSecond(), getFusionsPerSecond()));
+        // samples oldest first
+        int n = Math.min(sampleCount, SAMPLES);
+        for (int k = 0; k < n; k++) {
+            int i = (sampleCount - n + k) % SAMPLES;
+            if (k > 0) sb.append(',');
+            sb.append(String.format(Locale.ROOT, "{\"atMillis\":%d,\"splits\":%d,\"fusions\":%d}", sampleMillis[i], splitDeltas[i], fusionDeltas[i]));
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static void appendArray(StringBuilder sb, long[] a, int from, int to) {
+        sb.append('[');
+        for (int i = from; i < to; i++) {
+            if (i > from) sb.append(',');
+            sb.append(a[i]);
+        }
+        sb.append(']');
+    }
+
+    private static String name(Op op) {
+        return op.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,46 @@
+package bptree;
+
+import java.util.Map;
+
+// JMX view of a tree's TreeMetrics (see TreeMetrics.register). Latencies are in microseconds;
+// the structure figures come from the last sample the tree took, and the leaf fill bands from
+// the last refresh() on the tree thread.
+public interface TreeMetricsMXBean {
+    Map<String, Long> getOperationCounts();
+
+    // "<op>.p50", "<op>.p99", "<op>.p999", "<op>.max" and "<op>.mean" for every operation
+    Map<String, Double> getLatencyMicros();
+
+    double getAverageNodesPerDescent();
+
+    long getRecords();
+
+    int getDepth();
+
+    int getLeaves();
+
+    double getAverageLeafFill();
+
+    // leaves per 10% fill band, 0-10% first, as of getLeafScanAtMillis()
+    long[] getLeafFillDistribution();
+
+    long getStructureSampledAtMillis();
+
+    long getLeafScanAtMillis();
+
+    long getSplits();
+
+    long getFusions();
+
+    // averages over the last minute
+    double getSplitsPerSecond();
+
+    double getFusionsPerSecond();
+
+    String getText();
+
+    String getJson();
+
+    // clears the latencies and descents at the tree thread's next operation
+    void reset();
+}
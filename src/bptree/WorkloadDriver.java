@@ -0,0 +1,207 @@
+package bptree;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Random;
+
+// Scripted mixed-operation run against a BPlusTree loaded from a part file (for instance one made
+// by PartFileGenerator). Each operation is a search, insert, update, delete or scanFrom, picked
+// with the configured weights. Searches, updates, deletes and scan starts draw their ID from the
+// loaded IDs with a Zipfian skew, 0 < theta < 1 (theta 0 draws them uniformly); the hottest IDs
+// are scattered over the key space rather than bunched at its start. An insert puts back the
+// oldest ID deleted during the run, so hot IDs don't stay gone; with none pending it takes a
+// random AAA-000 ID, which mostly lands in a gap between the loaded ones.
+// Prints throughput and per-operation latency percentiles, then the tree's depth and leaf
+// occupancy, and checks the tree invariants and the record count at the end (exit code 1 if
+// either fails).
+// Usage: java bptree.WorkloadDriver <partfile> [--ops N] [--warmup N] [--mix read,insert,update,delete,scan]
+//            [--theta T] [--scan N] [--order N] [--load bulk|insert] [--seed S]
+//        T is 0 for uniform draws or in (0, 1), default 0.99
+public class WorkloadDriver {
+    private static final String[] OPS = {"search", "insert", "update", "delete", "scanFrom"};
+    private static final int SEARCH = 0, INSERT = 1, UPDATE = 2, DELETE = 3, SCAN = 4;
+
+    private String file;
+    private int ops = 1_000_000;
+    private int warmup = -1;                        // default: ops / 10
+    private int[] mix = {60, 10, 20, 5, 5};         // weights in OPS order
+    private double theta = ZipfianGenerator.DEFAULT_THETA;
+    private int scanLength = 100;
+    private int order = BPlusTree.DEFAULT_ORDER;
+    private boolean bulk = true;
+    private long seed = 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java bptree.WorkloadDriver <partfile> [--ops N] [--warmup N] [--mix read,insert,update,delete,scan]");
+            System.out.println("           [--theta T] [--scan N] [--order N] [--load bulk|insert] [--seed S]");
+            System.out.println("       T is 0 for uniform draws or in (0, 1), default " + ZipfianGenerator.DEFAULT_THETA);
+            return;
+        }
+        WorkloadDriver d = new WorkloadDriver();
+        d.file = args[0];
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for " + args[i]);
+            String v = args[i + 1];
+            switch (args[i]) {
+                case "--ops": d.ops = Integer.parseInt(v); break;
+                case "--warmup": d.warmup = Integer.parseInt(v); break;
+                case "--mix": d.mix = parseMix(v); break;
+                case "--theta": d.theta = parseTheta(v); break;
+                case "--scan": d.scanLength = Integer.parseInt(v); break;
+                case "--order": d.order = Integer.parseInt(v); break;
+                case "--load": d.bulk = !v.equals("insert"); break;
+                case "--seed": d.seed = Long.parseLong(v); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if (!d.run()) System.exit(1);
+    }
+
+    // 0 for uniform draws, otherwise what ZipfianGenerator accepts
+    private static double parseTheta(String v) {
+        double theta = Double.parseDouble(v);
+        if (theta != 0 && !(theta > 0 && theta < 1)) {
+            throw new IllegalArgumentException("--theta must be 0 (uniform) or in (0, 1), got " + v);
+        }
+        return theta;
+    }
+
+    private static int[] parseMix(String v) {
+        String[] parts = v.split(",");
+        if (parts.length != OPS.length) throw new IllegalArgumentException("--mix needs " + OPS.length + " weights, got " + v);
+        int[] out = new int[OPS.length];
+        int total = 0;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Integer.parseInt(parts[i].trim());
+            if (out[i] < 0) throw new IllegalArgumentException("negative weight in --mix " + v);
+            total += out[i];
+        }
+        if (total == 0) throw new IllegalArgumentException("--mix weights are all zero");
+        return out;
+    }
+
+    // loads the file, runs the workload and prints the report; false if a final check failed
+    boolean run() throws IOException {
+        BPlusTree tree = new BPlusTree(order);
+        long t0 = System.nanoTime();
+        PartFileReader.LoadStats read = tree.loadFromFile(file, bulk);
+        System.out.printf("Loaded %d records (%s, order %d) in %d ms from %s%n", tree.count(), bulk ? "bulk" : "one by one",
+                order, (System.nanoTime() - t0) / 1_000_000, read);
+        printShape(tree);
+        String[] keys = tree.range(null, null).map(r -> r.id).toArray(String[]::new);
+        if (keys.length == 0) throw new IllegalArgumentException(file + " holds no records");
+
+        Random rnd = new Random(seed);
+        int[] hot = shuffled(keys.length, rnd);
+        ZipfianGenerator zipf = theta > 0 ? new ZipfianGenerator(keys.length, theta, seed) : null;
+        PartFileGenerator descriptions = new PartFileGenerator(seed);
+        int[] cumulative = new int[OPS.length];
+        for (int i = 0, sum = 0; i < OPS.length; i++) cumulative[i] = sum += mix[i];
+
+        int warm = warmup >= 0 ? warmup : ops / 10;
+        LatencyHistogram[] latency = new LatencyHistogram[OPS.length];
+        long[] done = new long[OPS.length], hits = new long[OPS.length];
+        for (int i = 0; i < OPS.length; i++) latency[i] = new LatencyHistogram();
+        ArrayDeque<String> deleted = new ArrayDeque<>();
+        long expected = tree.count(), scanned = 0, start = 0;
+        System.out.printf("%d ops after %d warm-up ops, mix %s, %s keys, scans of %d%n", ops, warm, mixString(),
+                zipf == null ? "uniform" : "Zipfian (theta " + theta + ")", scanLength);
+
+        for (int i = 0; i < warm + ops; i++) {
+            if (i == warm) start = System.nanoTime();
+            int pick = rnd.nextInt(cumulative[OPS.length - 1]), op = 0;
+            while (pick >= cumulative[op]) op++;
+            String id;
+            if (op != INSERT) id = keys[hot[zipf == null ? rnd.nextInt(keys.length) : zipf.next()]];
+            else if (!deleted.isEmpty()) id = deleted.poll();
+            else id = PartFileGenerator.id(rnd.nextInt(PartFileGenerator.ID_UNIVERSE));
+            String desc = op == INSERT || op == UPDATE ? descriptions.description(rnd) : null;
+
+            long opStart = System.nanoTime();
+            boolean hit;
+            switch (op) {
+                case SEARCH: hit = tree.search(id) != null; break;
+                case INSERT: hit = tree.insert(new PartRecord(id, desc)); break;
+                case UPDATE: hit = tree.update(id, desc); break;
+                case DELETE: hit = tree.delete(id); break;
+                default: {
+                    int n = tree.scanFrom(id, scanLength).size();
+                    if (i >= warm) scanned += n;
+                    hit = n > 0;
+                }
+            }
+            long ns = System.nanoTime() - opStart;
+            if (op == INSERT && hit) expected++;
+            if (op == DELETE && hit) {
+                expected--;
+                deleted.add(id);
+            }
+            if (i >= warm) {
+                latency[op].record(ns);
+                done[op]++;
+                if (hit) hits[op]++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("Throughput: %.0f ops/s (%d ops in %d ms)%n", ops * 1e9 / Math.max(1, elapsed), ops, elapsed / 1_000_000);
+        System.out.println("  op        count    ok%     mean      p50      p90      p99    p99.9      max (us)");
+        for (int op = 0; op < OPS.length; op++) {
+            if (done[op] == 0) continue;
+            LatencyHistogram h = latency[op];
+            System.out.printf(Locale.ROOT, "  %-8s %7d %6.1f%% %8.2f %8.2f %8.2f %8.2f %8.2f %8.2f%n", OPS[op], done[op],
+                    hits[op] * 100.0 / done[op], h.mean() / 1e3, h.percentile(50) / 1e3, h.percentile(90) / 1e3,
+                    h.percentile(99) / 1e3, h.percentile(99.9) / 1e3, h.max() / 1e3);
+        }
+        if (done[SCAN] > 0) System.out.printf("  scans returned %.1f records on average%n", scanned / (double) done[SCAN]);
+        System.out.printf("Splits %d (%d internal), fusions %d (%d internal)%n",
+                tree.totalSplits, tree.parentSplits, tree.totalFusions, tree.parentFusions);
+        printShape(tree);
+
+        boolean ok = true;
+        try {
+            tree.checkInvariants();
+        } catch (IllegalStateException e) {
+            System.out.println("Invariant check FAILED: " + e.getMessage());
+            ok = false;
+        }
+        if (tree.count() != expected) {
+            System.out.printf("Record count FAILED: tree holds %d, expected %d%n", tree.count(), expected);
+            ok = false;
+        }
+        if (ok) System.out.println("Invariants OK, " + expected + " records as expected");
+        return ok;
+    }
+
+    private static void printShape(BPlusTree tree) {
+        System.out.printf("Tree: %d records, depth %d, %d leaves, average leaf fill %.1f%%%n",
+                tree.count(), tree.computeDepth(), tree.countLeaves(), tree.averageLeafFill() * 100);
+    }
+
+    private String mixString() {
+        StringBuilder sb = new StringBuilder();
+        int total = 0;
+        for (int w : mix) total += w;
+        for (int i = 0; i < OPS.length; i++) {
+            if (mix[i] == 0) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(String.format(Locale.ROOT, "%s %.0f%%", OPS[i], mix[i] * 100.0 / total));
+        }
+        return sb.toString();
+    }
+
+    // 0..n-1 in random order; maps Zipfian ranks to key positions
+    private static int[] shuffled(int n, Random rnd) {
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++) idx[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1);
+            int t = idx[i];
+            idx[i] = idx[j];
+            idx[j] = t;
+        }
+        return idx;
+    }
+}
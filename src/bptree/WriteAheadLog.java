@@ -0,0 +1,288 @@
+package bptree;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only log of insert/update/delete operations, one file per segment.
+// Each entry is framed as: int length | int crc32 | byte op | short idLen | id | int descLen | desc.
+// append() only buffers the entry and returns its LSN (end offset in the segment); commit(lsn)
+// makes it durable according to the SyncMode. In GROUP mode the first committer becomes the
+// leader and writes and fsyncs everything buffered so far, so concurrent commits share one fsync.
+public class WriteAheadLog implements Closeable {
+
+    public enum SyncMode {
+        ALWAYS,   // fsync on every commit
+        GROUP,    // fsync shared by all commits waiting at the same time
+        INTERVAL, // write on commit, fsync from a background thread every intervalMillis
+        NONE      // write on commit, leave fsync to the OS
+    }
+
+    public static final byte INSERT = 1;
+    public static final byte UPDATE = 2;
+    public static final byte DELETE = 3;
+
+    private static final int FRAME_HEADER = 8;
+
+    // one decoded log entry
+    public static class Entry {
+        public final byte op;
+        public final String id;
+        public final String description;
+
+        Entry(byte op, String id, String description) {
+            this.op = op;
+            this.id = id;
+            this.description = description;
+        }
+    }
+
+    public interface EntryHandler {
+        void apply(Entry e) throws IOException;
+    }
+
+    public final Path path;
+    private final FileChannel channel;
+    private final SyncMode mode;
+    private final ScheduledExecutorService syncer;
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private long appendedLsn;  // end of the last appended entry
+    private long writtenLsn;   // end of the data handed to the channel
+    private long syncedLsn;    // end of the data known to be on disk
+    private boolean flushing;  // a group-commit leader is writing
+    private IOException failure;
+
+    // counters
+    public long commits = 0;
+    public long fsyncs = 0;
+
+    // opens (or creates) a segment and appends after its last valid entry
+    public WriteAheadLog(Path path, SyncMode mode, long intervalMillis) throws IOException {
+        this.path = path;
+        this.mode = mode;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long end = channel.size();
+        channel.position(end);
+        this.appendedLsn = this.writtenLsn = this.syncedLsn = end;
+        if (mode == SyncMode.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "wal-sync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleAtFixedRate(this::backgroundSync, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    // buffers one entry and returns its LSN; nothing is written until commit
+    public synchronized long append(byte op, String id, String description) {
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        byte[] descBytes = description == null ? new byte[0] : description.getBytes(StandardCharsets.UTF_8);
+        int bodyLen = 1 + 2 + idBytes.length + 4 + descBytes.length;
+        ensurePending(FRAME_HEADER + bodyLen);
+
+        int start = pending.position();
+        pending.putInt(bodyLen).putInt(0);
+        pending.put(op).putShort((short) idBytes.length).put(idBytes).putInt(descBytes.length).put(descBytes);
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + FRAME_HEADER, bodyLen);
+        pending.putInt(start + 4, (int) crc.getValue());
+
+        appendedLsn += FRAME_HEADER + bodyLen;
+        return appendedLsn;
+    }
+
+    // returns once the entry ending at lsn is as durable as the SyncMode promises
+    public void commit(long lsn) throws IOException {
+        switch (mode) {
+            case ALWAYS:
+                synchronized (this) {
+                    commits++;
+                    if (syncedLsn >= lsn) return; // already covered by sync() or a checkpoint
+                    writePending();
+                    channel.force(false);
+                    fsyncs++;
+                    syncedLsn = writtenLsn;
+                }
+                return;
+            case INTERVAL:
+            case NONE:
+                synchronized (this) {
+                    commits++;
+                    if (writtenLsn < lsn) writePending();
+                }
+                return;
+            default:
+                groupCommit(lsn);
+        }
+    }
+
+    private void groupCommit(long lsn) throws IOException {
+        ByteBuffer batch;
+        long target;
+        synchronized (this) {
+            commits++;
+            while (true) {
+                if (failure != null) throw failure;
+                if (syncedLsn >= lsn) return;
+                if (!flushing) break;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while waiting for group commit", e);
+                }
+            }
+            // become the leader for everything appended so far
+            flushing = true;
+            batch = pending;
+            batch.flip();
+            pending = ByteBuffer.allocate(Math.max(64 * 1024, batch.capacity()));
+            target = appendedLsn;
+        }
+
+        IOException error = null;
+        try {
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+        synchronized (this) {
+            flushing = false;
+            if (error == null) {
+                fsyncs++;
+                writtenLsn = Math.max(writtenLsn, target);
+                syncedLsn = Math.max(syncedLsn, target);
+            } else {
+                failure = error;
+            }
+            notifyAll();
+        }
+        if (error != null) throw error;
+    }
+
+    // writes and fsyncs everything appended so far, whatever the mode
+    public synchronized void sync() throws IOException {
+        while (flushing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while waiting for group commit", e);
+            }
+        }
+        writePending();
+        channel.force(false);
+        fsyncs++;
+        syncedLsn = writtenLsn;
+    }
+
+    // bytes in this segment, including entries not yet written
+    public synchronized long size() {
+        return appendedLsn;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            // no shutdownNow(): interrupting a thread inside force() would close the channel
+            syncer.shutdown();
+            try {
+                syncer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sync();
+        channel.close();
+    }
+
+    private void backgroundSync() {
+        long target;
+        synchronized (this) {
+            target = writtenLsn;
+            if (target == syncedLsn) return;
+        }
+        try {
+            channel.force(false);
+            synchronized (this) {
+                fsyncs++;
+                syncedLsn = Math.max(syncedLsn, target);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+            }
+        }
+    }
+
+    // caller holds the lock and no leader is writing
+    private void writePending() throws IOException {
+        if (failure != null) throw failure;
+        pending.flip();
+        while (pending.hasRemaining()) channel.write(pending);
+        pending.clear();
+        writtenLsn = appendedLsn;
+    }
+
+    private void ensurePending(int bytes) {
+        if (pending.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        pending.flip();
+        bigger.put(pending);
+        pending = bigger;
+    }
+
+    // -------------------- REPLAY --------------------
+    // feeds every valid entry of a segment to handler in order and returns how many there were.
+    // A torn or corrupt tail (from a crash mid-write) ends the replay and is cut off the file.
+    public static int replay(Path path, EntryHandler handler) throws IOException {
+        int count = 0;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE - 8));
+            while (buf.hasRemaining() && ch.read(buf) > 0) {
+                // read until full or end of file
+            }
+            buf.flip();
+
+            long valid = 0;
+            while (buf.remaining() >= FRAME_HEADER) {
+                int start = buf.position();
+                int bodyLen = buf.getInt();
+                int crcValue = buf.getInt();
+                if (bodyLen < 7 || bodyLen > buf.remaining()) break;
+                CRC32 crc = new CRC32();
+                crc.update(buf.array(), start + FRAME_HEADER, bodyLen);
+                if ((int) crc.getValue() != crcValue) break;
+
+                byte op = buf.get();
+                int idLen = buf.getShort() & 0xFFFF;
+                String id = new String(buf.array(), buf.position(), idLen, StandardCharsets.UTF_8);
+                buf.position(buf.position() + idLen);
+                int descLen = buf.getInt();
+                String desc = new String(buf.array(), buf.position(), descLen, StandardCharsets.UTF_8);
+                buf.position(buf.position() + descLen);
+
+                handler.apply(new Entry(op, id, desc));
+                count++;
+                valid = buf.position();
+            }
+            if (valid < size) ch.truncate(valid);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,50 @@
+package bptree;
+
+import java.util.Random;
+
+// Draws ranks in [0, n) with a Zipfian distribution: rank 0 is the hottest, rank n-1 the coldest.
+// Uses the closed-form method of Gray et al. ("Quickly generating billion-record synthetic
+// databases"), so each draw is O(1) after an O(n) setup.
+public class ZipfianGenerator {
+
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final int n;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final Random random;
+
+    public ZipfianGenerator(int n, long seed) {
+        this(n, DEFAULT_THETA, seed);
+    }
+
+    // theta in (0, 1): larger values concentrate more of the draws on the hottest ranks
+    public ZipfianGenerator(int n, double theta, long seed) {
+        if (n < 1) throw new IllegalArgumentException("n must be positive");
+        if (theta <= 0 || theta >= 1) throw new IllegalArgumentException("theta must be in (0, 1)");
+        this.n = n;
+        this.theta = theta;
+        this.random = new Random(seed);
+        this.zetaN = zeta(n, theta);
+        double zeta2 = zeta(2, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+        this.eta = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+    }
+
+    public int next() {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1.0) return 0;
+        if (uz < 1.0 + Math.pow(0.5, theta)) return Math.min(1, n - 1);
+        int rank = (int) (n * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, n - 1);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) sum += 1.0 / Math.pow(i, theta);
+        return sum;
+    }
+}